@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.gateway.api.ExecutionContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import org.springframework.core.env.Environment;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * Fixtures shared by the benchmarks.
+ *
+ * @author GraviteeSource Team
+ */
+final class BenchmarkSupport {
+
+    static final String STYLESHEET = "/io/gravitee/policy/xslt/benchmark/catalog.xsl";
+
+    private BenchmarkSupport() {}
+
+    static String loadResource(String resource) {
+        try (InputStream is = BenchmarkSupport.class.getResourceAsStream(resource)) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Build a catalog document of at least the given size, in bytes.
+     */
+    static byte[] catalog(int size) {
+        StringBuilder builder = new StringBuilder(size + 256);
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<catalog>\n");
+        for (int i = 0; builder.length() < size; i++) {
+            builder
+                .append("    <cd>\n")
+                .append("        <title>Title ")
+                .append(i)
+                .append("</title>\n")
+                .append("        <artist>Artist ")
+                .append(i % 97)
+                .append("</artist>\n")
+                .append("        <country>UK</country>\n")
+                .append("        <price>")
+                .append(5 + i % 10)
+                .append('.')
+                .append(i % 9)
+                .append("0</price>\n")
+                .append("        <year>")
+                .append(1960 + i % 60)
+                .append("</year>\n")
+                .append("    </cd>\n");
+        }
+        builder.append("</catalog>\n");
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static ExecutionContext executionContext(boolean secureProcessing) {
+        Environment environment = new MockEnvironment().withProperty("policy.xslt.secure-processing", String.valueOf(secureProcessing));
+        TemplateEngine templateEngine = TemplateEngine.templateEngine();
+
+        // Stub only: a regular mock records every invocation, so the heap would grow with each benchmark iteration
+        ExecutionContext executionContext = mock(ExecutionContext.class, withSettings().stubOnly());
+        when(executionContext.getComponent(Environment.class)).thenReturn(environment);
+        when(executionContext.getTemplateEngine()).thenReturn(templateEngine);
+        return executionContext;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.benchmark;
+
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.STYLESHEET;
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.executionContext;
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.loadResource;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.xslt.configuration.XSLTParameter;
+import io.gravitee.policy.xslt.configuration.XSLTParameterType;
+import io.gravitee.policy.xslt.parameter.CompiledParameter;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.TransformerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.sf.saxon.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluation of a parameter by {@link CompiledParameter#resolve}, either from a constant or from an expression.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParameterBenchmark {
+
+    @Param({ "STRING", "NUMBER", "BOOLEAN", "XML" })
+    public XSLTParameterType type;
+
+    @Param({ "false", "true" })
+    public boolean expression;
+
+    private CompiledParameter parameter;
+
+    private ExecutionContext executionContext;
+
+    private Configuration configuration;
+
+    @Setup
+    public void setup() {
+        String value;
+        switch (type) {
+            case NUMBER:
+                value = "10.5";
+                break;
+            case BOOLEAN:
+                value = "true";
+                break;
+            case XML:
+                value = "<items><item>1</item><item>2</item></items>";
+                break;
+            default:
+                value = "EUR";
+        }
+
+        executionContext = executionContext(true);
+        if (expression) {
+            executionContext.getTemplateEngine().getTemplateContext().setVariable("value", value);
+            value = "{#value}";
+        }
+
+        XSLTParameter xsltParameter = new XSLTParameter();
+        xsltParameter.setName("value");
+        xsltParameter.setValue(value);
+        xsltParameter.setType(type);
+        parameter = CompiledParameter.compile(List.of(xsltParameter)).get(0);
+
+        configuration =
+            TransformerFactory.getInstance().getTemplate(loadResource(STYLESHEET), CompilationOptions.DEFAULT).getConfiguration();
+    }
+
+    @Benchmark
+    public Object resolve() throws Exception {
+        return parameter.resolve(executionContext, configuration, true);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.benchmark;
+
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.STYLESHEET;
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.catalog;
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.executionContext;
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.loadResource;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.xslt.XSLTTransformationPolicy;
+import io.gravitee.policy.xslt.configuration.XSLTParameter;
+import io.gravitee.policy.xslt.configuration.XSLTParameterType;
+import io.gravitee.policy.xslt.configuration.XSLTTransformationPolicyConfiguration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end transformation of a body, as done by {@link XSLTTransformationPolicy#toXSLT}.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PolicyBenchmark {
+
+    @Param({ "1024", "65536", "1048576", "52428800" })
+    public int payloadSize;
+
+    @Param({ "true", "false" })
+    public boolean secureProcessing;
+
+    private Function<Buffer, Buffer> transformation;
+
+    private Buffer payload;
+
+    @Setup
+    public void setup() {
+        XSLTParameter currency = new XSLTParameter();
+        currency.setName("currency");
+        currency.setValue("EUR");
+
+        XSLTParameter threshold = new XSLTParameter();
+        threshold.setName("threshold");
+        threshold.setValue("8");
+        threshold.setType(XSLTParameterType.NUMBER);
+
+        XSLTTransformationPolicyConfiguration configuration = new XSLTTransformationPolicyConfiguration();
+        configuration.setStylesheet(loadResource(STYLESHEET));
+        configuration.setParameters(List.of(currency, threshold));
+
+        transformation = new XSLTTransformationPolicy(configuration).toXSLT(executionContext(secureProcessing));
+        payload = Buffer.buffer(catalog(payloadSize));
+    }
+
+    @Benchmark
+    public Buffer transform() {
+        return transformation.apply(payload);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Buffer transformContended() {
+        return transformation.apply(payload);
+    }
+}
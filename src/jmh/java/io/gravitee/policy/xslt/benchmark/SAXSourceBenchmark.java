@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.benchmark;
+
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.catalog;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.xslt.utils.SAXSourceUtil;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.sax.SAXSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.Attributes;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Creation of the {@link SAXSource} from {@link SAXSourceUtil#createSAXSource} and parsing of the body.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SAXSourceBenchmark {
+
+    @Param({ "1024", "65536", "1048576", "52428800" })
+    public int payloadSize;
+
+    @Param({ "true", "false" })
+    public boolean secureProcessing;
+
+    private Buffer payload;
+
+    @Setup
+    public void setup() {
+        payload = Buffer.buffer(catalog(payloadSize));
+    }
+
+    @Benchmark
+    public int parse() throws Exception {
+        return parse(SAXSourceUtil.createSAXSource(payload, secureProcessing));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int parseContended() throws Exception {
+        return parse(SAXSourceUtil.createSAXSource(payload, secureProcessing));
+    }
+
+    private static int parse(SAXSource source) throws Exception {
+        ElementCounter counter = new ElementCounter();
+        XMLReader reader = source.getXMLReader();
+        reader.setContentHandler(counter);
+        reader.parse(source.getInputSource());
+        return counter.count;
+    }
+
+    private static class ElementCounter extends DefaultHandler {
+
+        private int count;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            count++;
+        }
+    }
+}
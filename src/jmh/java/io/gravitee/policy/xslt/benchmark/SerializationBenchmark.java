@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.benchmark;
+
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.STYLESHEET;
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.catalog;
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.loadResource;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.CompiledStylesheet;
+import io.gravitee.policy.xslt.transformer.StylesheetTransformer;
+import io.gravitee.policy.xslt.transformer.TransformerFactory;
+import io.gravitee.policy.xslt.utils.BufferResult;
+import io.gravitee.policy.xslt.utils.SAXSourceUtil;
+import java.util.concurrent.TimeUnit;
+import javax.xml.namespace.QName;
+import net.sf.saxon.om.NodeInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transformation of an already parsed document and serialization of the result into a {@link BufferResult}, which
+ * leaves the parsing of the body out of the measurement.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SerializationBenchmark {
+
+    @Param({ "1024", "65536", "1048576", "52428800" })
+    public int payloadSize;
+
+    private CompiledStylesheet stylesheet;
+
+    private NodeInfo document;
+
+    @Setup
+    public void setup() throws Exception {
+        stylesheet = TransformerFactory.getInstance().getTemplate(loadResource(STYLESHEET), CompilationOptions.DEFAULT);
+        document =
+            stylesheet
+                .getConfiguration()
+                .buildDocumentTree(SAXSourceUtil.createSAXSource(Buffer.buffer(catalog(payloadSize)), true))
+                .getRootNode();
+    }
+
+    @Benchmark
+    public Buffer serialize() throws Exception {
+        BufferResult result = new BufferResult(payloadSize);
+        StylesheetTransformer transformer = stylesheet.newTransformer();
+        transformer.setParameter(new QName("currency"), "EUR");
+        transformer.transform(document, result.getOutputStream());
+        return result.toBuffer();
+    }
+}
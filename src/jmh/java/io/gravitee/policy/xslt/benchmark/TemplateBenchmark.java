@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.benchmark;
+
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.STYLESHEET;
+import static io.gravitee.policy.xslt.benchmark.BenchmarkSupport.loadResource;
+
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.CompiledStylesheet;
+import io.gravitee.policy.xslt.transformer.EngineType;
+import io.gravitee.policy.xslt.transformer.TransformerFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stylesheet lookup through {@link TransformerFactory#getTemplate}, with a cold cache (compilation) and a warm cache.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+
+    @Param({ "true", "false" })
+    public boolean secureProcessing;
+
+    @Param({ "S9API", "JAXP" })
+    public EngineType engine;
+
+    private String stylesheet;
+
+    private CompilationOptions options;
+
+    @Setup
+    public void setup() {
+        stylesheet = loadResource(STYLESHEET);
+        options = CompilationOptions.builder().secureProcessing(secureProcessing).engine(engine).build();
+        TransformerFactory.getInstance().getTemplate(stylesheet, options);
+    }
+
+    @Benchmark
+    public CompiledStylesheet coldCache(ColdCache coldCache) {
+        return TransformerFactory.getInstance().getTemplate(stylesheet, options);
+    }
+
+    @Benchmark
+    public CompiledStylesheet warmCache() {
+        return TransformerFactory.getInstance().getTemplate(stylesheet, options);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public CompiledStylesheet warmCacheContended() {
+        return TransformerFactory.getInstance().getTemplate(stylesheet, options);
+    }
+
+    @State(Scope.Thread)
+    public static class ColdCache {
+
+        @Setup(Level.Invocation)
+        public void invalidate() {
+            TransformerFactory.getInstance().invalidateCache();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<xsl:stylesheet version="2.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+    <xsl:param name="currency" select="'USD'"/>
+    <xsl:param name="threshold" select="0"/>
+
+    <xsl:template match="/">
+        <catalog currency="{$currency}">
+            <xsl:for-each select="catalog/cd[number(price) ge number($threshold)]">
+                <cd>
+                    <title><xsl:value-of select="title"/></title>
+                    <artist><xsl:value-of select="artist"/></artist>
+                    <price><xsl:value-of select="price"/></price>
+                </cd>
+            </xsl:for-each>
+        </catalog>
+    </xsl:template>
+</xsl:stylesheet>
@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt;
+
+import io.gravitee.policy.xslt.cache.ResultCache;
+import io.gravitee.policy.xslt.stream.TransformationExecutor;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.EngineType;
+import io.gravitee.policy.xslt.transformer.TemplateCache;
+import io.gravitee.policy.xslt.transformer.TransformerFactory;
+import io.gravitee.policy.xslt.transformer.TransformerPool;
+import io.gravitee.policy.xslt.transformer.TreeModelType;
+import io.gravitee.policy.xslt.utils.DocumentLimits;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.core.env.Environment;
+
+/**
+ * Settings shared by all the XSLT policies of the gateway, read from its configuration (<code>policy.xslt.*</code>).
+ *
+ * Policies only get the gateway configuration with their messages, so the settings are resolved once, from the first
+ * message going through any XSLT policy. The shared caches, stylesheet store and transformer pools are configured at
+ * the same time, then all the messages reuse the same settings. Until then, the policies precompile their stylesheets
+ * with the compilation options of a gateway which configures none, and compile them again only if the resolved ones
+ * differ.
+ *
+ * @author GraviteeSource Team
+ */
+final class GatewaySettings {
+
+    private static final String XSLT_ENV_VAR_SECURE_PROCESSING = "policy.xslt.secure-processing";
+
+    private static final String XSLT_ENV_VAR_CACHE_MAX_SIZE = "policy.xslt.cache.max-size";
+    private static final String XSLT_ENV_VAR_CACHE_EXPIRE_AFTER_ACCESS = "policy.xslt.cache.expire-after-access";
+    private static final String XSLT_ENV_VAR_CACHE_DIRECTORY = "policy.xslt.cache.directory";
+
+    private static final String XSLT_ENV_VAR_ENGINE = "policy.xslt.engine";
+
+    private static final String ENGINE_DEFAULT_VALUE = "s9api";
+
+    private static final String XSLT_ENV_VAR_RESULT_CACHE_MAX_SIZE = "policy.xslt.result-cache.max-size";
+    private static final String XSLT_ENV_VAR_RESULT_CACHE_TIME_TO_LIVE = "policy.xslt.result-cache.time-to-live";
+    private static final String XSLT_ENV_VAR_RESULT_CACHE_OFF_HEAP = "policy.xslt.result-cache.off-heap";
+
+    private static final String XSLT_ENV_VAR_TRANSFORMER_POOL_MAX_IDLE = "policy.xslt.transformer-pool.max-idle";
+
+    private static final String XSLT_ENV_VAR_TREE_MODEL = "policy.xslt.tree-model";
+
+    private static final String TREE_MODEL_DEFAULT_VALUE = "tiny";
+
+    private static final String XSLT_ENV_VAR_LIMITS_MAX_BYTES = "policy.xslt.limits.max-bytes";
+    private static final String XSLT_ENV_VAR_LIMITS_MAX_DEPTH = "policy.xslt.limits.max-depth";
+    private static final String XSLT_ENV_VAR_LIMITS_MAX_ATTRIBUTES = "policy.xslt.limits.max-attributes";
+    private static final String XSLT_ENV_VAR_LIMITS_MAX_NODES = "policy.xslt.limits.max-nodes";
+
+    private static final String XSLT_ENV_VAR_OFFLOAD_ENABLED = "policy.xslt.offload.enabled";
+    private static final String XSLT_ENV_VAR_OFFLOAD_THRESHOLD = "policy.xslt.offload.threshold";
+    private static final String XSLT_ENV_VAR_OFFLOAD_POOL_SIZE = "policy.xslt.offload.pool-size";
+    private static final String XSLT_ENV_VAR_OFFLOAD_QUEUE_SIZE = "policy.xslt.offload.queue-size";
+    private static final String XSLT_ENV_VAR_OFFLOAD_VIRTUAL_THREADS = "policy.xslt.offload.virtual-threads";
+
+    private static final long OFFLOAD_THRESHOLD_DEFAULT_VALUE = 1024 * 1024;
+
+    /**
+     * Compilation options of a gateway which does not configure any
+     */
+    private static final CompilationOptions DEFAULT_COMPILATION_OPTIONS = CompilationOptions
+        .builder()
+        .secureProcessing(Boolean.parseBoolean(XSLTTransformationPolicy.SECURE_PROCESSING_DEFAULT_VALUE))
+        .engine(EngineType.valueOf(ENGINE_DEFAULT_VALUE.toUpperCase(Locale.ROOT)))
+        .build();
+    private static final CompilationOptions DEFAULT_TRACING_COMPILATION_OPTIONS = DEFAULT_COMPILATION_OPTIONS
+        .toBuilder()
+        .tracing(true)
+        .build();
+
+    private static volatile GatewaySettings current;
+
+    private static final CompletableFuture<GatewaySettings> firstResolved = new CompletableFuture<>();
+
+    /**
+     * Executor shared by all the policy instances to transform large bodies out of the event loop
+     */
+    private static TransformationExecutor transformationExecutor;
+
+    private final Environment environment;
+    private final boolean secureProcessing;
+    private final CompilationOptions compilationOptions;
+    private final CompilationOptions tracingCompilationOptions;
+    private final DocumentLimits limits;
+    private final TransformationExecutor executor;
+    private final long offloadThreshold;
+
+    private GatewaySettings(Environment environment) {
+        this.environment = environment;
+        this.secureProcessing =
+            Boolean.parseBoolean(
+                environment.getProperty(XSLT_ENV_VAR_SECURE_PROCESSING, XSLTTransformationPolicy.SECURE_PROCESSING_DEFAULT_VALUE)
+            );
+        this.compilationOptions =
+            CompilationOptions
+                .builder()
+                .secureProcessing(secureProcessing)
+                .engine(
+                    EngineType.valueOf(environment.getProperty(XSLT_ENV_VAR_ENGINE, ENGINE_DEFAULT_VALUE).trim().toUpperCase(Locale.ROOT))
+                )
+                .build();
+        this.tracingCompilationOptions = compilationOptions.toBuilder().tracing(true).build();
+        this.limits =
+            DocumentLimits
+                .builder()
+                .maxBytes(environment.getProperty(XSLT_ENV_VAR_LIMITS_MAX_BYTES, Long.class, 0L))
+                .maxDepth(environment.getProperty(XSLT_ENV_VAR_LIMITS_MAX_DEPTH, Integer.class, 0))
+                .maxAttributes(environment.getProperty(XSLT_ENV_VAR_LIMITS_MAX_ATTRIBUTES, Integer.class, 0))
+                .maxNodes(environment.getProperty(XSLT_ENV_VAR_LIMITS_MAX_NODES, Long.class, 0L))
+                .build();
+        this.executor =
+            environment.getProperty(XSLT_ENV_VAR_OFFLOAD_ENABLED, Boolean.class, false) ? getTransformationExecutor(environment) : null;
+        this.offloadThreshold = environment.getProperty(XSLT_ENV_VAR_OFFLOAD_THRESHOLD, Long.class, OFFLOAD_THRESHOLD_DEFAULT_VALUE);
+    }
+
+    /**
+     * @return the settings read from the given gateway configuration, resolved and applied on the first call.
+     */
+    static GatewaySettings of(Environment environment) {
+        GatewaySettings settings = current;
+        // A gateway has a single environment, only tests use several ones
+        if (settings == null || settings.environment != environment) {
+            synchronized (GatewaySettings.class) {
+                settings = current;
+                if (settings == null || settings.environment != environment) {
+                    settings = new GatewaySettings(environment);
+                    settings.configureShared();
+                    current = settings;
+                }
+            }
+            // Out of the lock, the policies waiting for the settings start precompiling their stylesheets
+            firstResolved.complete(settings);
+        }
+        return settings;
+    }
+
+    /**
+     * @return the settings resolved so far, completed once a first message went through an XSLT policy.
+     */
+    static CompletableFuture<GatewaySettings> resolved() {
+        GatewaySettings settings = current;
+        return settings == null ? firstResolved : CompletableFuture.completedFuture(settings);
+    }
+
+    /**
+     * @return the compilation options of the settings resolved so far or, before the first message, the default ones.
+     */
+    static CompilationOptions getCurrentCompilationOptions(boolean tracing) {
+        GatewaySettings settings = current;
+        if (settings != null) {
+            return settings.getCompilationOptions(tracing);
+        }
+        return tracing ? DEFAULT_TRACING_COMPILATION_OPTIONS : DEFAULT_COMPILATION_OPTIONS;
+    }
+
+    boolean isSecureProcessing() {
+        return secureProcessing;
+    }
+
+    /**
+     * @param tracing whether the stylesheets are compiled with trace instructions, for transformations with a budget.
+     */
+    CompilationOptions getCompilationOptions(boolean tracing) {
+        return tracing ? tracingCompilationOptions : compilationOptions;
+    }
+
+    DocumentLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * @return the executor running the transformation of large bodies, <code>null</code> if they are transformed inline.
+     */
+    TransformationExecutor getTransformationExecutor() {
+        return executor;
+    }
+
+    long getOffloadThreshold() {
+        return offloadThreshold;
+    }
+
+    private void configureShared() {
+        TransformerFactory
+            .getInstance()
+            .configureCache(
+                environment.getProperty(XSLT_ENV_VAR_CACHE_MAX_SIZE, Long.class, TemplateCache.DEFAULT_MAXIMUM_SIZE),
+                Duration.ofSeconds(environment.getProperty(XSLT_ENV_VAR_CACHE_EXPIRE_AFTER_ACCESS, Long.class, 0L))
+            )
+            .configureStore(getCacheDirectory(environment))
+            .configureTransformerPool(
+                environment.getProperty(XSLT_ENV_VAR_TRANSFORMER_POOL_MAX_IDLE, Integer.class, TransformerPool.DEFAULT_MAXIMUM_IDLE)
+            )
+            .configureTreeModel(
+                TreeModelType.valueOf(
+                    environment.getProperty(XSLT_ENV_VAR_TREE_MODEL, TREE_MODEL_DEFAULT_VALUE).trim().toUpperCase(Locale.ROOT)
+                )
+            );
+        ResultCache
+            .getInstance()
+            .configure(
+                environment.getProperty(XSLT_ENV_VAR_RESULT_CACHE_MAX_SIZE, Long.class, ResultCache.DEFAULT_MAXIMUM_WEIGHT),
+                Duration.ofSeconds(
+                    environment.getProperty(
+                        XSLT_ENV_VAR_RESULT_CACHE_TIME_TO_LIVE,
+                        Long.class,
+                        ResultCache.DEFAULT_TIME_TO_LIVE.toSeconds()
+                    )
+                ),
+                environment.getProperty(XSLT_ENV_VAR_RESULT_CACHE_OFF_HEAP, Boolean.class, false)
+            );
+    }
+
+    private static Path getCacheDirectory(Environment environment) {
+        String directory = environment.getProperty(XSLT_ENV_VAR_CACHE_DIRECTORY);
+        return directory == null || directory.isBlank() ? null : Paths.get(directory);
+    }
+
+    /**
+     * Created once for all, only called while holding the class lock.
+     */
+    private static TransformationExecutor getTransformationExecutor(Environment environment) {
+        if (transformationExecutor == null) {
+            transformationExecutor =
+                TransformationExecutor.create(
+                    environment.getProperty(
+                        XSLT_ENV_VAR_OFFLOAD_POOL_SIZE,
+                        Integer.class,
+                        Runtime.getRuntime().availableProcessors()
+                    ),
+                    environment.getProperty(
+                        XSLT_ENV_VAR_OFFLOAD_QUEUE_SIZE,
+                        Integer.class,
+                        TransformationExecutor.DEFAULT_QUEUE_SIZE
+                    ),
+                    environment.getProperty(XSLT_ENV_VAR_OFFLOAD_VIRTUAL_THREADS, Boolean.class, false)
+                );
+        }
+        return transformationExecutor;
+    }
+}
@@ -20,24 +20,62 @@ import io.gravitee.gateway.api.ExecutionContext;
 import io.gravitee.gateway.api.Request;
 import io.gravitee.gateway.api.Response;
 import io.gravitee.gateway.api.buffer.Buffer;
-import io.gravitee.gateway.api.http.stream.TransformableRequestStreamBuilder;
-import io.gravitee.gateway.api.http.stream.TransformableResponseStreamBuilder;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
 import io.gravitee.gateway.api.stream.ReadWriteStream;
 import io.gravitee.gateway.api.stream.exception.TransformationException;
 import io.gravitee.policy.api.PolicyChain;
 import io.gravitee.policy.api.annotations.OnRequestContent;
 import io.gravitee.policy.api.annotations.OnResponseContent;
+import io.gravitee.policy.xslt.cache.CachedResult;
+import io.gravitee.policy.xslt.cache.ResultCache;
+import io.gravitee.policy.xslt.cache.ResultKey;
+import io.gravitee.policy.xslt.configuration.InputFormat;
 import io.gravitee.policy.xslt.configuration.PolicyScope;
+import io.gravitee.policy.xslt.configuration.XSLTOutput;
 import io.gravitee.policy.xslt.configuration.XSLTTransformationPolicyConfiguration;
-import io.gravitee.policy.xslt.transformer.TransformerFactory;
+import io.gravitee.policy.xslt.metrics.Counter;
+import io.gravitee.policy.xslt.metrics.TransformationMetrics;
+import io.gravitee.policy.xslt.metrics.TransformationTrace;
+import io.gravitee.policy.xslt.parameter.CompiledParameter;
+import io.gravitee.policy.xslt.routing.StylesheetRouter;
+import io.gravitee.policy.xslt.stream.OffloadingTransformableStream;
+import io.gravitee.policy.xslt.stream.StreamTransformation;
+import io.gravitee.policy.xslt.stream.ChunkedOutputTransformableStream;
+import io.gravitee.policy.xslt.stream.XmlSniffingStream;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.CompiledStylesheet;
+import io.gravitee.policy.xslt.transformer.ConfiguredStylesheet;
+import io.gravitee.policy.xslt.transformer.OutputOptions;
+import io.gravitee.policy.xslt.transformer.StylesheetTransformer;
+import io.gravitee.policy.xslt.transformer.TransformationAbortedException;
+import io.gravitee.policy.xslt.transformer.TransformationBudget;
+import io.gravitee.policy.xslt.utils.BufferInputStream;
+import io.gravitee.policy.xslt.utils.BufferResult;
+import io.gravitee.policy.xslt.utils.CapturingOutputStream;
+import io.gravitee.policy.xslt.utils.CountingInputStream;
+import io.gravitee.policy.xslt.utils.CountingOutputStream;
+import io.gravitee.policy.xslt.utils.DocumentLimits;
+import io.gravitee.policy.xslt.utils.JsonSourceUtil;
+import io.gravitee.policy.xslt.utils.RootElementSniffer;
 import io.gravitee.policy.xslt.utils.SAXSourceUtil;
-import java.io.ByteArrayOutputStream;
+import io.gravitee.policy.xslt.utils.SizeLimitingInputStream;
+import io.gravitee.policy.xslt.utils.XmlSniffer;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
-import javax.xml.transform.Result;
-import javax.xml.transform.Templates;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.sax.SAXSource;
-import javax.xml.transform.stream.StreamResult;
+import java.util.function.Supplier;
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import net.sf.saxon.Configuration;
 import org.springframework.core.env.Environment;
 
 /**
@@ -51,11 +89,61 @@ public class XSLTTransformationPolicy {
      */
     private final XSLTTransformationPolicyConfiguration xsltTransformationPolicyConfiguration;
 
-    private static final String XSLT_ENV_VAR_SECURE_PROCESSING = "policy.xslt.secure-processing";
     public static final String SECURE_PROCESSING_DEFAULT_VALUE = "true";
 
+    /**
+     * Stylesheet applied when there is no route or when none matches
+     */
+    private final ConfiguredStylesheet defaultStylesheet;
+
+    /**
+     * Stylesheets selected depending on the message
+     */
+    private final StylesheetRouter router;
+
+    /**
+     * Stylesheets applied in turn to the result of the selected stylesheet
+     */
+    private final List<ConfiguredStylesheet> pipeline;
+
+    /**
+     * Serialization of the result, compact unless configured or declared otherwise
+     */
+    private final OutputOptions outputOptions;
+
+    /**
+     * Content type of the transformed message, JSON when the result is serialized as JSON
+     */
+    private final String resultContentType;
+
+    /**
+     * XSLT parameters, resolved once for all the messages
+     */
+    private final List<CompiledParameter> parameters;
+
+    /**
+     * Whether each transformation has a time or evaluation step budget, which requires stylesheets compiled with tracing
+     */
+    private final boolean budgeted;
+
     public XSLTTransformationPolicy(final XSLTTransformationPolicyConfiguration xsltTransformationPolicyConfiguration) {
         this.xsltTransformationPolicyConfiguration = xsltTransformationPolicyConfiguration;
+        this.parameters = CompiledParameter.compile(xsltTransformationPolicyConfiguration.getParameters());
+
+        this.budgeted = xsltTransformationPolicyConfiguration.getTimeout() > 0 || xsltTransformationPolicyConfiguration.getMaxSteps() > 0;
+
+        // Stylesheets are precompiled right away, then again only if the gateway settings turn out to differ once known
+        CompilationOptions precompilationOptions = GatewaySettings.getCurrentCompilationOptions(budgeted);
+        CompletableFuture<CompilationOptions> resolvedOptions = GatewaySettings
+            .resolved()
+            .thenApply(gatewaySettings -> gatewaySettings.getCompilationOptions(budgeted));
+        this.defaultStylesheet =
+            new ConfiguredStylesheet(xsltTransformationPolicyConfiguration.getStylesheet(), precompilationOptions, resolvedOptions);
+        this.router = StylesheetRouter.compile(xsltTransformationPolicyConfiguration.getRoutes(), precompilationOptions, resolvedOptions);
+        this.pipeline = compilePipeline(xsltTransformationPolicyConfiguration.getPipeline(), precompilationOptions, resolvedOptions);
+        this.outputOptions = toOutputOptions(xsltTransformationPolicyConfiguration.getOutput());
+        this.resultContentType =
+            "json".equalsIgnoreCase(outputOptions.getMethod()) ? MediaType.APPLICATION_JSON : MediaType.APPLICATION_XML;
     }
 
     @OnResponseContent
@@ -64,12 +152,7 @@ public class XSLTTransformationPolicy {
             xsltTransformationPolicyConfiguration.getScope() == null ||
             xsltTransformationPolicyConfiguration.getScope() == PolicyScope.RESPONSE
         ) {
-            return TransformableResponseStreamBuilder
-                .on(response)
-                .chain(chain)
-                .contentType(MediaType.APPLICATION_XML)
-                .transform(toXSLT(executionContext))
-                .build();
+            return skipNonXml(response.headers(), () -> createResponseStream(response, chain, executionContext));
         }
 
         return null;
@@ -78,57 +161,311 @@ public class XSLTTransformationPolicy {
     @OnRequestContent
     public ReadWriteStream onRequestContent(Request request, PolicyChain chain, ExecutionContext executionContext) {
         if (xsltTransformationPolicyConfiguration.getScope() == PolicyScope.REQUEST) {
-            return TransformableRequestStreamBuilder
-                .on(request)
-                .chain(chain)
-                .contentType(MediaType.APPLICATION_XML)
-                .transform(toXSLT(executionContext))
-                .build();
+            return skipNonXml(request.headers(), () -> createRequestStream(request, chain, executionContext));
         }
 
         return null;
     }
 
-    public Function<Buffer, Buffer> toXSLT(ExecutionContext executionContext) {
-        Environment environment = executionContext.getComponent(Environment.class);
-        boolean secureProcessing = Boolean.parseBoolean(
-            environment.getProperty(XSLT_ENV_VAR_SECURE_PROCESSING, SECURE_PROCESSING_DEFAULT_VALUE)
+    /**
+     * When enabled, leave the messages which can not be XML untouched instead of failing to parse them.
+     *
+     * @return the transforming stream, possibly preceded by a look at the first bytes of the body, or <code>null</code>
+     * if the headers are enough to tell that the message is not XML.
+     */
+    private ReadWriteStream<Buffer> skipNonXml(HttpHeaders headers, Supplier<ReadWriteStream<Buffer>> transformation) {
+        // JSON bodies are always transformed
+        if (
+            !xsltTransformationPolicyConfiguration.isSkipNonXml() ||
+            xsltTransformationPolicyConfiguration.getInputFormat() == InputFormat.JSON
+        ) {
+            return transformation.get();
+        }
+
+        Counter skipped = TransformationMetrics.getInstance().getSkipped();
+        if (!XmlSniffer.mayBeXml(headers)) {
+            skipped.increment();
+            return null;
+        }
+
+        return new XmlSniffingStream(transformation, skipped::increment);
+    }
+
+    private ReadWriteStream<Buffer> createResponseStream(Response response, PolicyChain chain, ExecutionContext executionContext) {
+        if (xsltTransformationPolicyConfiguration.isChunkedOutput()) {
+            return new ChunkedOutputTransformableStream(
+                response.headers(),
+                chain,
+                resultContentType,
+                toStreamTransformation(executionContext)
+            );
+        }
+
+        // Without executor, every body is transformed inline, like the gateway transformable streams do, but a document
+        // crossing its limits is reported as a client error instead of a 500
+        GatewaySettings gatewaySettings = GatewaySettings.of(executionContext.getComponent(Environment.class));
+        return new OffloadingTransformableStream(
+            response.headers(),
+            chain,
+            resultContentType,
+            toStreamTransformation(executionContext),
+            gatewaySettings.getTransformationExecutor(),
+            gatewaySettings.getOffloadThreshold()
+        );
+    }
+
+    private ReadWriteStream<Buffer> createRequestStream(Request request, PolicyChain chain, ExecutionContext executionContext) {
+        if (xsltTransformationPolicyConfiguration.isChunkedOutput()) {
+            return new ChunkedOutputTransformableStream(
+                request.headers(),
+                chain,
+                resultContentType,
+                toStreamTransformation(executionContext)
+            );
+        }
+
+        // Without executor, every body is transformed inline, like the gateway transformable streams do, but a document
+        // crossing its limits is reported as a client error instead of a 500
+        GatewaySettings gatewaySettings = GatewaySettings.of(executionContext.getComponent(Environment.class));
+        return new OffloadingTransformableStream(
+            request.headers(),
+            chain,
+            resultContentType,
+            toStreamTransformation(executionContext),
+            gatewaySettings.getTransformationExecutor(),
+            gatewaySettings.getOffloadThreshold()
         );
+    }
+
+    public Function<Buffer, Buffer> toXSLT(ExecutionContext executionContext) {
+        StreamTransformation transformation = toStreamTransformation(executionContext);
 
         return input -> {
+            BufferResult result = new BufferResult(input.length());
+            transformation.transform(new BufferInputStream(input), result.getOutputStream());
+            return result.toBuffer();
+        };
+    }
+
+    public StreamTransformation toStreamTransformation(ExecutionContext executionContext) {
+        GatewaySettings gatewaySettings = GatewaySettings.of(executionContext.getComponent(Environment.class));
+        boolean secureProcessing = gatewaySettings.isSecureProcessing();
+        // Only the stylesheets of the policies with a budget pay for the trace instructions
+        CompilationOptions compilationOptions = gatewaySettings.getCompilationOptions(budgeted);
+        DocumentLimits limits = gatewaySettings.getLimits();
+
+        return (input, output) -> {
+            TransformationTrace trace = new TransformationTrace();
             try {
-                // Get XSL stylesheet and transform it using internal template engine
-                String stylesheet = executionContext.getTemplateEngine().convert(xsltTransformationPolicyConfiguration.getStylesheet());
-
-                Templates template = TransformerFactory.getInstance().setSecureProcessing(secureProcessing).getTemplate(stylesheet);
-
-                SAXSource saxSource = SAXSourceUtil.createSAXSource(input, secureProcessing);
-
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                Result result = new StreamResult(baos);
-                Transformer transformer = template.newTransformer();
-
-                // Add parameters
-                if (xsltTransformationPolicyConfiguration.getParameters() != null) {
-                    xsltTransformationPolicyConfiguration
-                        .getParameters()
-                        .forEach(parameter -> {
-                            if (parameter.getName() != null && !parameter.getName().trim().isEmpty()) {
-                                // Apply SpEL conversion
-                                String value = (parameter.getValue() != null)
-                                    ? executionContext.getTemplateEngine().getValue(parameter.getValue(), String.class)
-                                    : null;
-
-                                transformer.setParameter(parameter.getName(), value);
-                            }
-                        });
+                // Identify the body before anything reads it, reading the received chunks twice rather than copying them
+                byte[] bodyDigest = null;
+                long bodyLength = 0;
+                InputStream body = input;
+                if (xsltTransformationPolicyConfiguration.isCacheResults()) {
+                    if (!body.markSupported()) {
+                        body = new ByteArrayInputStream(body.readAllBytes());
+                    }
+                    body.mark(Integer.MAX_VALUE);
+                    CountingInputStream digested = new CountingInputStream(body);
+                    bodyDigest =
+                        ResultKey.digest(limits.hasByteLimit() ? new SizeLimitingInputStream(digested, limits.getMaxBytes()) : digested);
+                    bodyLength = digested.getCount();
+                    body.reset();
                 }
 
-                transformer.transform(saxSource, result);
-                return Buffer.buffer(baos.toString());
+                CountingInputStream countingInput = new CountingInputStream(body);
+                CountingOutputStream countingOutput = new CountingOutputStream(output);
+                // The size limit applies to whatever reads the body, JSON included
+                InputStream source = limits.hasByteLimit()
+                    ? new SizeLimitingInputStream(countingInput, limits.getMaxBytes())
+                    : countingInput;
+
+                ConfiguredStylesheet configuredStylesheet;
+                if (router.isEmpty()) {
+                    configuredStylesheet = defaultStylesheet;
+                } else {
+                    QName rootElement = null;
+                    if (router.requiresRootElement() && xsltTransformationPolicyConfiguration.getInputFormat() == InputFormat.XML) {
+                        source = new BufferedInputStream(source);
+                        rootElement = RootElementSniffer.peek(source);
+                    }
+                    configuredStylesheet =
+                        router.route(executionContext, router.requiresContentType() ? getContentType(executionContext) : null, rootElement);
+
+                    if (configuredStylesheet == null) {
+                        configuredStylesheet = defaultStylesheet;
+                        if (configuredStylesheet.isBlank()) {
+                            // No stylesheet applies to this message, leave it as is
+                            source.transferTo(countingOutput);
+                            return;
+                        }
+                    }
+                }
+
+                List<String> sources = new ArrayList<>(1 + pipeline.size());
+                List<CompiledStylesheet> stylesheets = getStylesheets(
+                    configuredStylesheet,
+                    executionContext,
+                    compilationOptions,
+                    trace,
+                    sources
+                );
+                List<StylesheetTransformer> transformers = new ArrayList<>(stylesheets.size());
+                for (CompiledStylesheet stylesheet : stylesheets) {
+                    transformers.add(stylesheet.newTransformer());
+                }
+                transformers.get(transformers.size() - 1).setOutputOptions(outputOptions);
+                if (budgeted) {
+                    TransformationBudget budget = new TransformationBudget(
+                        Duration.ofMillis(xsltTransformationPolicyConfiguration.getTimeout()),
+                        xsltTransformationPolicyConfiguration.getMaxSteps()
+                    );
+                    transformers.forEach(transformer -> transformer.setTraceListener(budget));
+                }
+
+                // Add parameters, to each stylesheet of the pipeline
+                long start = System.nanoTime();
+                Map<QName, Object> parameterValues = xsltTransformationPolicyConfiguration.isCacheResults() ? new HashMap<>() : null;
+                for (CompiledParameter parameter : parameters) {
+                    Configuration configuration = null;
+                    Object value = null;
+                    for (int i = 0; i < stylesheets.size(); i++) {
+                        // Values are only resolved again for a stylesheet compiled with another configuration
+                        if (stylesheets.get(i).getConfiguration() != configuration) {
+                            configuration = stylesheets.get(i).getConfiguration();
+                            value = parameter.resolve(executionContext, configuration, secureProcessing);
+                        }
+                        transformers.get(i).setParameter(parameter.getName(), value);
+                    }
+                    if (parameterValues != null) {
+                        parameterValues.put(parameter.getName(), value);
+                    }
+                }
+                trace.parametersResolved(System.nanoTime() - start);
+
+                ResultKey resultKey = null;
+                if (parameterValues != null && parameterValues.values().stream().allMatch(ResultKey::isCacheable)) {
+                    resultKey =
+                        new ResultKey(
+                            sources,
+                            compilationOptions,
+                            outputOptions,
+                            xsltTransformationPolicyConfiguration.getInputFormat(),
+                            parameterValues,
+                            bodyDigest
+                        );
+
+                    start = System.nanoTime();
+                    CachedResult cached = ResultCache.getInstance().get(resultKey);
+                    trace.resultCacheLookup(cached != null);
+                    if (cached != null) {
+                        // Neither parsed nor transformed
+                        cached.writeTo(countingOutput);
+                        trace.transformed(System.nanoTime() - start, bodyLength, countingOutput.getCount());
+                        transformers.forEach(StylesheetTransformer::release);
+                        return;
+                    }
+                }
+
+                start = System.nanoTime();
+                CapturingOutputStream capture = resultKey == null ? null : ResultCache.getInstance().capture(countingOutput);
+                Source document = xsltTransformationPolicyConfiguration.getInputFormat() == InputFormat.JSON
+                    ? JsonSourceUtil.createJsonSource(source, getContentType(executionContext), stylesheets.get(0).getConfiguration())
+                    : SAXSourceUtil.createSAXSource(source, secureProcessing, limits);
+                transformers
+                    .get(0)
+                    .transform(document, transformers.subList(1, transformers.size()), capture == null ? countingOutput : capture);
+                trace.transformed(System.nanoTime() - start, countingInput.getCount(), countingOutput.getCount());
+                // Only reused after a success, a failure may leave them in any state
+                transformers.forEach(StylesheetTransformer::release);
+
+                if (capture != null && capture.isComplete()) {
+                    ResultCache.getInstance().put(resultKey, capture.getCaptured());
+                }
             } catch (Exception ex) {
+                TransformationAbortedException aborted = TransformationAbortedException.find(ex);
+                if (aborted != null) {
+                    trace.aborted(aborted.getReason());
+                } else {
+                    trace.failed();
+                }
                 throw new TransformationException("Unable to apply XSL Transformation: " + ex.getMessage(), ex);
+            } finally {
+                TransformationMetrics.getInstance().record(trace);
+                trace.writeTo(executionContext);
             }
         };
     }
+
+    private static OutputOptions toOutputOptions(XSLTOutput output) {
+        if (output == null) {
+            return OutputOptions.DEFAULT;
+        }
+
+        return OutputOptions
+            .builder()
+            .method(output.getMethod())
+            .indent(output.getIndent())
+            .encoding(output.getEncoding())
+            .omitXmlDeclaration(output.getOmitXmlDeclaration())
+            .build();
+    }
+
+    private static List<ConfiguredStylesheet> compilePipeline(
+        List<String> stylesheets,
+        CompilationOptions precompilationOptions,
+        CompletableFuture<CompilationOptions> resolvedOptions
+    ) {
+        if (stylesheets == null || stylesheets.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<ConfiguredStylesheet> pipeline = new ArrayList<>(stylesheets.size());
+        for (String stylesheet : stylesheets) {
+            if (stylesheet != null && !stylesheet.isBlank()) {
+                pipeline.add(new ConfiguredStylesheet(stylesheet, precompilationOptions, resolvedOptions));
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * @param sources receives the stylesheets resolved for the message, in the same order.
+     * @return the selected stylesheet, followed by the ones of the pipeline.
+     */
+    private List<CompiledStylesheet> getStylesheets(
+        ConfiguredStylesheet configuredStylesheet,
+        ExecutionContext executionContext,
+        CompilationOptions compilationOptions,
+        TransformationTrace trace,
+        List<String> sources
+    ) {
+        String source = configuredStylesheet.resolve(executionContext);
+        CompiledStylesheet stylesheet = configuredStylesheet.get(source, compilationOptions, trace);
+        sources.add(source);
+        if (pipeline.isEmpty()) {
+            return Collections.singletonList(stylesheet);
+        }
+
+        List<CompiledStylesheet> stylesheets = new ArrayList<>(1 + pipeline.size());
+        stylesheets.add(stylesheet);
+        for (ConfiguredStylesheet next : pipeline) {
+            // The trace identifies the selected stylesheet, only the time spent compiling the next ones is added
+            TransformationTrace nextTrace = new TransformationTrace();
+            String nextSource = next.resolve(executionContext);
+            stylesheets.add(next.get(nextSource, compilationOptions, nextTrace));
+            sources.add(nextSource);
+            if (!nextTrace.isCacheHit()) {
+                trace.compiled(trace.getCompileTime() + nextTrace.getCompileTime());
+            }
+        }
+        return stylesheets;
+    }
+
+    private String getContentType(ExecutionContext executionContext) {
+        HttpHeaders headers = xsltTransformationPolicyConfiguration.getScope() == PolicyScope.REQUEST
+            ? executionContext.request().headers()
+            : executionContext.response().headers();
+        return headers.get(HttpHeaderNames.CONTENT_TYPE);
+    }
 }
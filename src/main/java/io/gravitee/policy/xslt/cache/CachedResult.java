@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Serialized result of a transformation, kept in the buffers it has been captured in, either on the heap or direct.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CachedResult {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final ByteBuffer[] content;
+    private final int length;
+    private final long capacity;
+    private final long expiresAt;
+
+    private CachedResult(ByteBuffer[] content, long expiresAt) {
+        this.content = content;
+        int length = 0;
+        long capacity = 0;
+        for (ByteBuffer buffer : content) {
+            length += buffer.remaining();
+            capacity += buffer.capacity();
+        }
+        this.length = length;
+        this.capacity = capacity;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @param content the buffers holding the result, ready to be read, which are kept as they are.
+     */
+    static CachedResult of(List<ByteBuffer> content, long expiresAt) {
+        ByteBuffer[] buffers = new ByteBuffer[content.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuffer buffer = content.get(i);
+            // Heap buffers are written straight from their array
+            buffers[i] = buffer.isDirect() ? buffer.asReadOnlyBuffer() : buffer;
+        }
+        return new CachedResult(buffers, expiresAt);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the memory held by the result, which may be a bit larger than its length.
+     */
+    long capacity() {
+        return capacity;
+    }
+
+    public boolean isOffHeap() {
+        return content.length > 0 && content[0].isDirect();
+    }
+
+    boolean isExpired(long now) {
+        return expiresAt != 0 && now - expiresAt > 0;
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        byte[] chunk = null;
+        for (ByteBuffer buffer : content) {
+            if (buffer.hasArray()) {
+                output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                continue;
+            }
+
+            // Each reader works on its own view of the shared buffer
+            ByteBuffer view = buffer.duplicate();
+            if (chunk == null) {
+                chunk = new byte[Math.min(CHUNK_SIZE, length)];
+            }
+            while (view.hasRemaining()) {
+                int read = Math.min(chunk.length, view.remaining());
+                view.get(chunk, 0, read);
+                output.write(chunk, 0, read);
+            }
+        }
+    }
+}
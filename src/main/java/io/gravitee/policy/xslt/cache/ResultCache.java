@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.cache;
+
+import io.gravitee.policy.xslt.utils.CapturingOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe cache of transformation results, shared by all the APIs.
+ *
+ * The cache is bounded by the total size of the results it holds (the least recently accessed result is evicted first)
+ * and each result is kept for a given duration at most. Results can be kept in direct buffers, out of the heap, so
+ * that large results do not weigh on the garbage collector.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ResultCache {
+
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(5);
+
+    /**
+     * Rough size of an entry besides its content, so that many small results are not considered free
+     */
+    static final int ENTRY_OVERHEAD = 256;
+
+    private static final ResultCache _instance = new ResultCache(DEFAULT_MAXIMUM_WEIGHT, DEFAULT_TIME_TO_LIVE, false);
+
+    /**
+     * Entries in access order, guarded by the map itself
+     */
+    private final LinkedHashMap<ResultKey, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private volatile long maximumWeight;
+    private volatile long timeToLiveNanos;
+    private volatile boolean offHeap;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public ResultCache(long maximumWeight, Duration timeToLive, boolean offHeap) {
+        configure(maximumWeight, timeToLive, offHeap);
+    }
+
+    public static ResultCache getInstance() {
+        return _instance;
+    }
+
+    /**
+     * Update the cache bounds. A shrunk cache is trimmed on the next insertion, and the storage only applies to the
+     * results inserted afterwards.
+     *
+     * @param maximumWeight the maximum total size of the results, in bytes, must be greater than 0.
+     * @param timeToLive the duration a result is kept after being inserted, {@link Duration#ZERO} to keep it until it
+     * is evicted.
+     * @param offHeap whether to keep the results in direct buffers.
+     */
+    public ResultCache configure(long maximumWeight, Duration timeToLive, boolean offHeap) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Result cache maximum weight must be greater than 0");
+        }
+        this.maximumWeight = maximumWeight;
+        this.timeToLiveNanos = timeToLive == null || timeToLive.isNegative() ? 0 : timeToLive.toNanos();
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    /**
+     * @return the size of the largest result which can be kept.
+     */
+    public int getMaximumResultSize() {
+        return (int) Math.min(maximumWeight - ENTRY_OVERHEAD, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * @return the result, or <code>null</code> if it is not in cache or has expired.
+     */
+    public CachedResult get(ResultKey key) {
+        CachedResult result;
+        synchronized (entries) {
+            result = entries.get(key);
+            if (result != null && result.isExpired(System.nanoTime())) {
+                remove(key, result);
+                result = null;
+            }
+        }
+
+        if (result == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return result;
+    }
+
+    /**
+     * @return a stream writing to <code>output</code> which captures the result, as long as it can be kept, in the
+     * storage of the results: in direct buffers if the results are kept out of the heap.
+     */
+    public CapturingOutputStream capture(OutputStream output) {
+        return new CapturingOutputStream(output, getMaximumResultSize(), offHeap);
+    }
+
+    /**
+     * Keep the result held by the given buffers, ready to be read, which are not copied: they must not be modified
+     * afterwards.
+     */
+    public void put(ResultKey key, List<ByteBuffer> content) {
+        long timeToLive = timeToLiveNanos;
+        // Zero means no expiration, make sure a computed deadline never is
+        long expiresAt = timeToLive == 0 ? 0 : (System.nanoTime() + timeToLive) | 1;
+        CachedResult result = CachedResult.of(content, expiresAt);
+        if (result.capacity() > getMaximumResultSize()) {
+            return;
+        }
+
+        synchronized (entries) {
+            CachedResult previous = entries.put(key, result);
+            if (previous != null) {
+                weight -= weigh(previous);
+            }
+            weight += weigh(result);
+
+            Iterator<Map.Entry<ResultKey, CachedResult>> eldest = entries.entrySet().iterator();
+            while (weight > maximumWeight && eldest.hasNext()) {
+                CachedResult evicted = eldest.next().getValue();
+                eldest.remove();
+                weight -= weigh(evicted);
+                evictionCount.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    public long size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the total size of the results in cache, in bytes.
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    private void remove(ResultKey key, CachedResult result) {
+        entries.remove(key);
+        weight -= weigh(result);
+        evictionCount.increment();
+    }
+
+    private static long weigh(CachedResult result) {
+        return result.capacity() + ENTRY_OVERHEAD;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.cache;
+
+import io.gravitee.policy.xslt.configuration.InputFormat;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.OutputOptions;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.xml.namespace.QName;
+
+/**
+ * Identifies the result of a transformation: the stylesheets applied, how they were compiled and serialized, the
+ * values of their parameters and the body.
+ *
+ * The cache is shared by all the APIs, so no part of the key is a fingerprint which two different inputs could share:
+ * a collision would give a client the result computed for another API, or for another body. The stylesheets are
+ * compared as a whole, which costs little as the configured ones are the same instances from one message to the next.
+ * The body is identified by its SHA-256 digest, which avoids keeping the body itself. The digest is computed with
+ * {@link #digest(InputStream)} while reading the body, so that it does not have to be copied either.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ResultKey {
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(ResultKey::newDigest);
+
+    private static final int DIGEST_BUFFER_SIZE = 8192;
+
+    private final List<String> stylesheets;
+    private final CompilationOptions compilationOptions;
+    private final OutputOptions outputOptions;
+    private final InputFormat inputFormat;
+    private final Map<QName, Object> parameters;
+    private final byte[] digest;
+    private final int hash;
+
+    /**
+     * @param stylesheets the stylesheets, in the order they are applied.
+     * @param parameters the resolved values of the parameters, which must all be {@link #isCacheable(Object) cacheable}.
+     * @param bodyDigest the digest of the body, as computed by {@link #digest(InputStream)}.
+     */
+    public ResultKey(
+        List<String> stylesheets,
+        CompilationOptions compilationOptions,
+        OutputOptions outputOptions,
+        InputFormat inputFormat,
+        Map<QName, Object> parameters,
+        byte[] bodyDigest
+    ) {
+        this.stylesheets = List.copyOf(stylesheets);
+        this.compilationOptions = compilationOptions;
+        this.outputOptions = outputOptions;
+        this.inputFormat = inputFormat;
+        this.parameters = Map.copyOf(parameters);
+        this.digest = bodyDigest;
+        this.hash =
+            Objects.hash(this.stylesheets, compilationOptions, outputOptions, inputFormat, this.parameters, Arrays.hashCode(digest));
+    }
+
+    /**
+     * Read the whole body to compute its digest, without closing it.
+     */
+    public static byte[] digest(InputStream body) throws IOException {
+        MessageDigest digest = DIGESTS.get();
+        digest.reset();
+        byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Only values which are compared by value can be part of a key, nodes are not.
+     */
+    public static boolean isCacheable(Object parameterValue) {
+        return parameterValue instanceof String || parameterValue instanceof BigDecimal || parameterValue instanceof Boolean;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ResultKey that = (ResultKey) o;
+        return (
+            hash == that.hash &&
+            Arrays.equals(digest, that.digest) &&
+            stylesheets.equals(that.stylesheets) &&
+            Objects.equals(compilationOptions, that.compilationOptions) &&
+            Objects.equals(outputOptions, that.outputOptions) &&
+            inputFormat == that.inputFormat &&
+            parameters.equals(that.parameters)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
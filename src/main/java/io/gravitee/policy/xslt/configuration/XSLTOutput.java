@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.configuration;
+
+/**
+ * Serialization of the transformation result. A property which is not set keeps the value declared by the
+ * <code>xsl:output</code> of the stylesheet.
+ *
+ * @author GraviteeSource Team
+ */
+public class XSLTOutput {
+
+    private String method;
+
+    /**
+     * When not set, the output is only indented if the stylesheet explicitly asks for it
+     */
+    private Boolean indent;
+
+    private String encoding;
+
+    private Boolean omitXmlDeclaration;
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public Boolean getIndent() {
+        return indent;
+    }
+
+    public void setIndent(Boolean indent) {
+        this.indent = indent;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    public Boolean getOmitXmlDeclaration() {
+        return omitXmlDeclaration;
+    }
+
+    public void setOmitXmlDeclaration(Boolean omitXmlDeclaration) {
+        this.omitXmlDeclaration = omitXmlDeclaration;
+    }
+}
@@ -27,6 +27,8 @@ public class XSLTParameter {
 
     private String value;
 
+    private XSLTParameterType type = XSLTParameterType.STRING;
+
     public String getName() {
         return name;
     }
@@ -43,6 +45,14 @@ public class XSLTParameter {
         this.value = value;
     }
 
+    public XSLTParameterType getType() {
+        return type;
+    }
+
+    public void setType(XSLTParameterType type) {
+        this.type = type;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
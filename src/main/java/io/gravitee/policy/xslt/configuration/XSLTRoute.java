@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.configuration;
+
+/**
+ * Stylesheet applied to the messages matching all the conditions of the route. A condition which is not set always
+ * matches.
+ *
+ * @author GraviteeSource Team
+ */
+public class XSLTRoute {
+
+    /**
+     * Media type of the message, without parameters, e.g. <code>application/soap+xml</code> or <code>text/*</code>
+     */
+    private String contentType;
+
+    /**
+     * Root element of the document: <code>local</code> in any namespace, <code>{uri}local</code>, or
+     * <code>{uri}*</code> for any element of a namespace
+     */
+    private String rootElement;
+
+    /**
+     * Expression which must evaluate to <code>true</code>
+     */
+    private String condition;
+
+    private String stylesheet;
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getRootElement() {
+        return rootElement;
+    }
+
+    public void setRootElement(String rootElement) {
+        this.rootElement = rootElement;
+    }
+
+    public String getCondition() {
+        return condition;
+    }
+
+    public void setCondition(String condition) {
+        this.condition = condition;
+    }
+
+    public String getStylesheet() {
+        return stylesheet;
+    }
+
+    public void setStylesheet(String stylesheet) {
+        this.stylesheet = stylesheet;
+    }
+}
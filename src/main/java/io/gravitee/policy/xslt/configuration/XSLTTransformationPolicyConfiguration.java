@@ -29,8 +29,32 @@ public class XSLTTransformationPolicyConfiguration implements PolicyConfiguratio
 
     private List<XSLTParameter> parameters = new ArrayList<>();
 
+    private List<XSLTRoute> routes = new ArrayList<>();
+
+    private List<String> pipeline = new ArrayList<>();
+
     private PolicyScope scope = PolicyScope.RESPONSE;
 
+    private InputFormat inputFormat = InputFormat.XML;
+
+    private XSLTOutput output;
+
+    private boolean chunkedOutput;
+
+    private boolean skipNonXml;
+
+    private boolean cacheResults;
+
+    /**
+     * Maximum duration of a transformation, in milliseconds, 0 for no limit
+     */
+    private long timeout;
+
+    /**
+     * Maximum number of evaluation steps of a transformation, 0 for no limit
+     */
+    private long maxSteps;
+
     public String getStylesheet() {
         return stylesheet;
     }
@@ -47,6 +71,22 @@ public class XSLTTransformationPolicyConfiguration implements PolicyConfiguratio
         this.parameters = parameters;
     }
 
+    public List<XSLTRoute> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(List<XSLTRoute> routes) {
+        this.routes = routes;
+    }
+
+    public List<String> getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(List<String> pipeline) {
+        this.pipeline = pipeline;
+    }
+
     public PolicyScope getScope() {
         return scope;
     }
@@ -54,4 +94,60 @@ public class XSLTTransformationPolicyConfiguration implements PolicyConfiguratio
     public void setScope(PolicyScope scope) {
         this.scope = scope;
     }
+
+    public InputFormat getInputFormat() {
+        return inputFormat;
+    }
+
+    public void setInputFormat(InputFormat inputFormat) {
+        this.inputFormat = inputFormat;
+    }
+
+    public XSLTOutput getOutput() {
+        return output;
+    }
+
+    public void setOutput(XSLTOutput output) {
+        this.output = output;
+    }
+
+    public boolean isChunkedOutput() {
+        return chunkedOutput;
+    }
+
+    public void setChunkedOutput(boolean chunkedOutput) {
+        this.chunkedOutput = chunkedOutput;
+    }
+
+    public boolean isSkipNonXml() {
+        return skipNonXml;
+    }
+
+    public void setSkipNonXml(boolean skipNonXml) {
+        this.skipNonXml = skipNonXml;
+    }
+
+    public boolean isCacheResults() {
+        return cacheResults;
+    }
+
+    public void setCacheResults(boolean cacheResults) {
+        this.cacheResults = cacheResults;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    public void setMaxSteps(long maxSteps) {
+        this.maxSteps = maxSteps;
+    }
 }
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.metrics;
+
+import io.gravitee.policy.xslt.transformer.TransformationAbortedException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of all the transformations made with a given stylesheet.
+ *
+ * @author GraviteeSource Team
+ */
+public final class StylesheetMetrics {
+
+    private final Timer compilations = new Timer();
+    private final Counter cacheHits = new Counter();
+    private final Counter cacheMisses = new Counter();
+    private final Counter resultCacheHits = new Counter();
+    private final Counter resultCacheMisses = new Counter();
+    private final Timer parameterEvaluations = new Timer();
+    private final Timer transformations = new Timer();
+    private final Counter inputBytes = new Counter();
+    private final Counter outputBytes = new Counter();
+    private final Counter failures = new Counter();
+    private final Counter timeouts = new Counter();
+    private final Counter stepBudgetAborts = new Counter();
+
+    void record(TransformationTrace trace) {
+        if (trace.isCacheHit()) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+            compilations.record(trace.getCompileTime(), TimeUnit.NANOSECONDS);
+        }
+
+        if (trace.isResultCacheUsed()) {
+            if (trace.isResultCacheHit()) {
+                resultCacheHits.increment();
+            } else {
+                resultCacheMisses.increment();
+            }
+        }
+
+        if (trace.isFailed()) {
+            failures.increment();
+            if (trace.getAbortReason() == TransformationAbortedException.Reason.TIMEOUT) {
+                timeouts.increment();
+            } else if (trace.getAbortReason() == TransformationAbortedException.Reason.STEPS) {
+                stepBudgetAborts.increment();
+            }
+            return;
+        }
+
+        parameterEvaluations.record(trace.getParameterTime(), TimeUnit.NANOSECONDS);
+        transformations.record(trace.getTransformTime(), TimeUnit.NANOSECONDS);
+        inputBytes.increment(trace.getInputBytes());
+        outputBytes.increment(trace.getOutputBytes());
+    }
+
+    public Timer getCompilations() {
+        return compilations;
+    }
+
+    public Counter getCacheHits() {
+        return cacheHits;
+    }
+
+    public Counter getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public Counter getResultCacheHits() {
+        return resultCacheHits;
+    }
+
+    public Counter getResultCacheMisses() {
+        return resultCacheMisses;
+    }
+
+    public Timer getParameterEvaluations() {
+        return parameterEvaluations;
+    }
+
+    /**
+     * @return the time spent parsing the body and applying the stylesheet. The body is parsed while it is transformed so
+     * both can not be told apart.
+     */
+    public Timer getTransformations() {
+        return transformations;
+    }
+
+    public Counter getInputBytes() {
+        return inputBytes;
+    }
+
+    public Counter getOutputBytes() {
+        return outputBytes;
+    }
+
+    public Counter getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the number of transformations aborted because they exceeded their time budget, included in the failures.
+     */
+    public Counter getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return the number of transformations aborted because they exceeded their evaluation step budget, included in the
+     * failures.
+     */
+    public Counter getStepBudgetAborts() {
+        return stepBudgetAborts;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Records the number of occurrences of an operation and their duration.
+ *
+ * Count and total time grow for the lifetime of the timer, while the maximum decays: like a Micrometer timer, it is the
+ * maximum duration recorded over the last {@link #DEFAULT_MAX_WINDOW}, tracked by a ring of {@link #MAX_BUCKETS}
+ * buckets rotated one after the other.
+ *
+ * @author GraviteeSource Team
+ */
+public final class Timer {
+
+    public static final Duration DEFAULT_MAX_WINDOW = Duration.ofMinutes(2);
+
+    static final int MAX_BUCKETS = 3;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+
+    private final LongSupplier clock;
+    private final long rotationInterval;
+    private final AtomicLong[] maxBuckets = new AtomicLong[MAX_BUCKETS];
+    private volatile int currentBucket;
+    private volatile long lastRotation;
+
+    public Timer() {
+        this(System::nanoTime, DEFAULT_MAX_WINDOW);
+    }
+
+    Timer(LongSupplier clock, Duration maxWindow) {
+        this.clock = clock;
+        this.rotationInterval = maxWindow.toNanos() / MAX_BUCKETS;
+        this.lastRotation = clock.getAsLong();
+        for (int i = 0; i < MAX_BUCKETS; i++) {
+            maxBuckets[i] = new AtomicLong();
+        }
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(duration);
+        count.increment();
+        totalTime.add(nanos);
+
+        rotate();
+        for (AtomicLong bucket : maxBuckets) {
+            bucket.accumulateAndGet(nanos, Long::max);
+        }
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double totalTime(TimeUnit unit) {
+        return toUnit(totalTime.sum(), unit);
+    }
+
+    /**
+     * @return the maximum duration recorded over the last {@link #DEFAULT_MAX_WINDOW}, 0 if there is none.
+     */
+    public double max(TimeUnit unit) {
+        rotate();
+        return toUnit(maxBuckets[currentBucket].get(), unit);
+    }
+
+    public double mean(TimeUnit unit) {
+        long count = count();
+        return count == 0 ? 0.0 : totalTime(unit) / count;
+    }
+
+    private void rotate() {
+        long now = clock.getAsLong();
+        if (now - lastRotation < rotationInterval) {
+            return;
+        }
+
+        synchronized (maxBuckets) {
+            long elapsed = now - lastRotation;
+            if (elapsed < rotationInterval) {
+                return;
+            }
+
+            // The current bucket is the oldest one, reset it and move on to the next oldest
+            long rotations = Math.min(elapsed / rotationInterval, MAX_BUCKETS);
+            int bucket = currentBucket;
+            for (long i = 0; i < rotations; i++) {
+                maxBuckets[bucket].set(0);
+                bucket = (bucket + 1) % MAX_BUCKETS;
+            }
+            currentBucket = bucket;
+            lastRotation = now - elapsed % rotationInterval;
+        }
+    }
+
+    private static double toUnit(long nanos, TimeUnit unit) {
+        return (double) nanos / TimeUnit.NANOSECONDS.convert(1, unit);
+    }
+}
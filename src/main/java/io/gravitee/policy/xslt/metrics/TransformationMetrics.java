@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the transformation metrics, tagged by stylesheet fingerprint.
+ *
+ * Stylesheets built from expressions may produce an unbounded number of fingerprints, so only the first
+ * {@link #MAXIMUM_STYLESHEETS} ones are tracked individually. The metrics of the next ones are merged under
+ * {@link #OTHER_STYLESHEETS}.
+ *
+ * The gateway does not expose any meter registry to its policies, so these metrics are neither registered nor
+ * published: they can only be read programmatically, through {@link #getInstance()}. The attributes written by each
+ * {@link TransformationTrace} are what reaches the gateway analytics and logging.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TransformationMetrics {
+
+    public static final int MAXIMUM_STYLESHEETS = 1000;
+
+    public static final String OTHER_STYLESHEETS = "other";
+
+    private static final TransformationMetrics _instance = new TransformationMetrics();
+
+    private final Map<String, StylesheetMetrics> stylesheets = new ConcurrentHashMap<>();
+
+    private final Counter skipped = new Counter();
+
+    public static TransformationMetrics getInstance() {
+        return _instance;
+    }
+
+    public StylesheetMetrics getStylesheetMetrics(String fingerprint) {
+        StylesheetMetrics metrics = stylesheets.get(fingerprint);
+        if (metrics == null) {
+            String key = stylesheets.size() < MAXIMUM_STYLESHEETS ? fingerprint : OTHER_STYLESHEETS;
+            metrics = stylesheets.computeIfAbsent(key, k -> new StylesheetMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of each tracked stylesheet, by fingerprint.
+     */
+    public Map<String, StylesheetMetrics> getStylesheets() {
+        return Collections.unmodifiableMap(stylesheets);
+    }
+
+    /**
+     * @return the number of messages left untouched because they could not be XML.
+     */
+    public Counter getSkipped() {
+        return skipped;
+    }
+
+    public void record(TransformationTrace trace) {
+        // The stylesheet may not even be known, if the expression it contains can not be evaluated
+        if (trace.getFingerprint() != null) {
+            getStylesheetMetrics(trace.getFingerprint()).record(trace);
+        }
+    }
+}
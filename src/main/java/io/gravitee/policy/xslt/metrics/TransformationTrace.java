@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.metrics;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.xslt.transformer.TransformationAbortedException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures of a single transformation. Durations are in nanoseconds.
+ *
+ * A trace is filled while the transformation runs and is then written into the attributes of the execution context, so
+ * that they can be used by the gateway analytics and logging. Durations are written in microseconds.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TransformationTrace {
+
+    public static final String ATTR_STYLESHEET = ExecutionContext.ATTR_PREFIX + "xslt.stylesheet";
+    public static final String ATTR_CACHE = ExecutionContext.ATTR_PREFIX + "xslt.cache";
+    public static final String ATTR_RESULT_CACHE = ExecutionContext.ATTR_PREFIX + "xslt.result-cache";
+    public static final String ATTR_COMPILE_TIME = ExecutionContext.ATTR_PREFIX + "xslt.compile-time";
+    public static final String ATTR_PARAMETER_TIME = ExecutionContext.ATTR_PREFIX + "xslt.parameter-time";
+    public static final String ATTR_TRANSFORM_TIME = ExecutionContext.ATTR_PREFIX + "xslt.transform-time";
+    public static final String ATTR_INPUT_BYTES = ExecutionContext.ATTR_PREFIX + "xslt.input-bytes";
+    public static final String ATTR_OUTPUT_BYTES = ExecutionContext.ATTR_PREFIX + "xslt.output-bytes";
+    public static final String ATTR_ABORTED = ExecutionContext.ATTR_PREFIX + "xslt.aborted";
+
+    private String fingerprint;
+    private boolean cacheHit = true;
+    private long compileTime;
+    private Boolean resultCacheHit;
+    private long parameterTime;
+    private long transformTime;
+    private long inputBytes;
+    private long outputBytes;
+    private boolean failed;
+    private TransformationAbortedException.Reason abortReason;
+
+    /**
+     * The stylesheet used by the transformation, considered already compiled until {@link #compiled(long)} is called.
+     */
+    public void stylesheet(String fingerprint) {
+        this.fingerprint = fingerprint;
+        this.cacheHit = true;
+    }
+
+    public void compiled(long compileTime) {
+        this.cacheHit = false;
+        this.compileTime = compileTime;
+    }
+
+    /**
+     * The result has been looked up in the result cache. On a hit, the transformation time is the time spent writing
+     * the cached result.
+     */
+    public void resultCacheLookup(boolean hit) {
+        this.resultCacheHit = hit;
+    }
+
+    public void parametersResolved(long parameterTime) {
+        this.parameterTime = parameterTime;
+    }
+
+    public void transformed(long transformTime, long inputBytes, long outputBytes) {
+        this.transformTime = transformTime;
+        this.inputBytes = inputBytes;
+        this.outputBytes = outputBytes;
+    }
+
+    public void failed() {
+        this.failed = true;
+    }
+
+    /**
+     * The transformation has failed because it exceeded its budget.
+     */
+    public void aborted(TransformationAbortedException.Reason reason) {
+        this.failed = true;
+        this.abortReason = reason;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    public long getCompileTime() {
+        return compileTime;
+    }
+
+    public boolean isResultCacheUsed() {
+        return resultCacheHit != null;
+    }
+
+    public boolean isResultCacheHit() {
+        return Boolean.TRUE.equals(resultCacheHit);
+    }
+
+    public long getParameterTime() {
+        return parameterTime;
+    }
+
+    public long getTransformTime() {
+        return transformTime;
+    }
+
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return why the transformation has been aborted, <code>null</code> if it has not.
+     */
+    public TransformationAbortedException.Reason getAbortReason() {
+        return abortReason;
+    }
+
+    public void writeTo(ExecutionContext executionContext) {
+        if (fingerprint == null) {
+            return;
+        }
+
+        executionContext.setAttribute(ATTR_STYLESHEET, fingerprint);
+        executionContext.setAttribute(ATTR_CACHE, cacheHit ? "hit" : "miss");
+        if (!cacheHit) {
+            executionContext.setAttribute(ATTR_COMPILE_TIME, TimeUnit.NANOSECONDS.toMicros(compileTime));
+        }
+
+        if (resultCacheHit != null) {
+            executionContext.setAttribute(ATTR_RESULT_CACHE, resultCacheHit ? "hit" : "miss");
+        }
+
+        if (abortReason != null) {
+            executionContext.setAttribute(ATTR_ABORTED, abortReason.name().toLowerCase(Locale.ROOT));
+        }
+
+        if (!failed) {
+            executionContext.setAttribute(ATTR_PARAMETER_TIME, TimeUnit.NANOSECONDS.toMicros(parameterTime));
+            executionContext.setAttribute(ATTR_TRANSFORM_TIME, TimeUnit.NANOSECONDS.toMicros(transformTime));
+            executionContext.setAttribute(ATTR_INPUT_BYTES, inputBytes);
+            executionContext.setAttribute(ATTR_OUTPUT_BYTES, outputBytes);
+        }
+    }
+}
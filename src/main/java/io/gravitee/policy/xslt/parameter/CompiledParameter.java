@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.parameter;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.xslt.configuration.XSLTParameter;
+import io.gravitee.policy.xslt.configuration.XSLTParameterType;
+import io.gravitee.policy.xslt.utils.ExpressionLanguageUtil;
+import io.gravitee.policy.xslt.utils.SAXSourceUtil;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.transform.sax.SAXSource;
+import net.sf.saxon.Configuration;
+import net.sf.saxon.om.NodeInfo;
+import org.xml.sax.InputSource;
+
+/**
+ * XSLT parameter resolved once, when the policy is created.
+ *
+ * The name is parsed into a {@link QName} (a namespaced parameter can be declared using the <code>{uri}local</code>
+ * notation). A value without any expression is converted to its declared type once and for all and never goes through
+ * the template engine. A value with an expression is evaluated for each message, then converted.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CompiledParameter {
+
+    private final QName name;
+    private final String clarkName;
+    private final XSLTParameterType type;
+    private final String expression;
+    private final Object constant;
+
+    /**
+     * Last document built for a constant XML value, along with the configuration it belongs to
+     */
+    private volatile XmlConstant xmlConstant;
+
+    private CompiledParameter(QName name, XSLTParameterType type, String value) {
+        this.name = name;
+        this.clarkName = name.toString();
+        this.type = type;
+
+        if (ExpressionLanguageUtil.containsExpression(value)) {
+            this.expression = value;
+            this.constant = null;
+        } else {
+            this.expression = null;
+            this.constant = type == XSLTParameterType.XML ? value : convert(value);
+        }
+    }
+
+    /**
+     * Compile the configured parameters, ignoring the ones without name.
+     *
+     * @throws IllegalArgumentException if a constant value can not be converted to its declared type.
+     */
+    public static List<CompiledParameter> compile(List<XSLTParameter> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<CompiledParameter> compiled = new ArrayList<>(parameters.size());
+        for (XSLTParameter parameter : parameters) {
+            if (parameter.getName() != null && !parameter.getName().trim().isEmpty()) {
+                XSLTParameterType type = parameter.getType() == null ? XSLTParameterType.STRING : parameter.getType();
+                compiled.add(new CompiledParameter(QName.valueOf(parameter.getName().trim()), type, parameter.getValue()));
+            }
+        }
+        return Collections.unmodifiableList(compiled);
+    }
+
+    public QName getName() {
+        return name;
+    }
+
+    public XSLTParameterType getType() {
+        return type;
+    }
+
+    public boolean isConstant() {
+        return expression == null;
+    }
+
+    /**
+     * Resolve the value of the parameter for the current message.
+     *
+     * @param executionContext the context used to evaluate the expression, if any.
+     * @param configuration the Saxon configuration XML values must be built with.
+     * @param secureProcessing whether XML values must be parsed securely.
+     */
+    public Object resolve(ExecutionContext executionContext, Configuration configuration, boolean secureProcessing) throws Exception {
+        if (isConstant()) {
+            if (type != XSLTParameterType.XML || constant == null) {
+                return constant;
+            }
+
+            XmlConstant current = xmlConstant;
+            if (current == null || current.configuration != configuration || current.secureProcessing != secureProcessing) {
+                current = new XmlConstant(configuration, secureProcessing, parse((String) constant, configuration, secureProcessing));
+                xmlConstant = current;
+            }
+            return current.node;
+        }
+
+        // Apply SpEL conversion
+        String value = executionContext.getTemplateEngine().getValue(expression, String.class);
+        if (type == XSLTParameterType.XML) {
+            return value == null ? null : parse(value, configuration, secureProcessing);
+        }
+        return convert(value);
+    }
+
+    private Object convert(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        switch (type) {
+            case NUMBER:
+                try {
+                    return new BigDecimal(value.trim());
+                } catch (NumberFormatException nfe) {
+                    throw new IllegalArgumentException("Value of XSLT parameter " + clarkName + " is not a number: " + value, nfe);
+                }
+            case BOOLEAN:
+                String trimmed = value.trim();
+                if ("true".equals(trimmed) || "1".equals(trimmed)) {
+                    return Boolean.TRUE;
+                } else if ("false".equals(trimmed) || "0".equals(trimmed)) {
+                    return Boolean.FALSE;
+                }
+                throw new IllegalArgumentException("Value of XSLT parameter " + clarkName + " is not a boolean: " + value);
+            default:
+                return value;
+        }
+    }
+
+    private static NodeInfo parse(String value, Configuration configuration, boolean secureProcessing) throws Exception {
+        SAXSource source = SAXSourceUtil.createSAXSource(new InputSource(new StringReader(value)), secureProcessing);
+        return configuration.buildDocumentTree(source).getRootNode();
+    }
+
+    private static final class XmlConstant {
+
+        private final Configuration configuration;
+        private final boolean secureProcessing;
+        private final NodeInfo node;
+
+        private XmlConstant(Configuration configuration, boolean secureProcessing, NodeInfo node) {
+            this.configuration = configuration;
+            this.secureProcessing = secureProcessing;
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.routing;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.xslt.configuration.XSLTRoute;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.ConfiguredStylesheet;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.namespace.QName;
+
+/**
+ * Route parsed once, when the policy is created.
+ *
+ * @author GraviteeSource Team
+ */
+final class StylesheetRoute {
+
+    private static final String WILDCARD = "*";
+
+    private final String contentType;
+    private final boolean rootElementCondition;
+    private final String rootNamespace;
+    private final String rootLocalName;
+    private final String condition;
+    private final ConfiguredStylesheet stylesheet;
+
+    StylesheetRoute(XSLTRoute route, CompilationOptions precompilationOptions, CompletableFuture<CompilationOptions> resolvedOptions) {
+        this.contentType = isBlank(route.getContentType()) ? null : route.getContentType().trim().toLowerCase(Locale.ROOT);
+        this.condition = isBlank(route.getCondition()) ? null : route.getCondition();
+        this.stylesheet = new ConfiguredStylesheet(route.getStylesheet(), precompilationOptions, resolvedOptions);
+
+        String rootElement = isBlank(route.getRootElement()) ? null : route.getRootElement().trim();
+        this.rootElementCondition = rootElement != null;
+        if (rootElement == null) {
+            this.rootNamespace = null;
+            this.rootLocalName = null;
+        } else if (rootElement.startsWith("{")) {
+            int end = rootElement.indexOf('}');
+            if (end < 0 || end == rootElement.length() - 1) {
+                throw new IllegalArgumentException("Invalid root element name '" + rootElement + "'");
+            }
+            this.rootNamespace = rootElement.substring(1, end);
+            this.rootLocalName = rootElement.substring(end + 1);
+        } else {
+            // Any namespace
+            this.rootNamespace = null;
+            this.rootLocalName = rootElement;
+        }
+    }
+
+    boolean hasContentTypeCondition() {
+        return contentType != null;
+    }
+
+    boolean hasRootElementCondition() {
+        return rootElementCondition;
+    }
+
+    ConfiguredStylesheet getStylesheet() {
+        return stylesheet;
+    }
+
+    /**
+     * @param contentType the media type of the message, lower-cased and without parameters.
+     */
+    boolean matches(ExecutionContext executionContext, String contentType, QName rootElement) {
+        // Cheapest conditions first, the expression is only evaluated when the others match
+        return matchesContentType(contentType) && matchesRootElement(rootElement) && matchesCondition(executionContext);
+    }
+
+    private boolean matchesContentType(String messageContentType) {
+        if (contentType == null) {
+            return true;
+        }
+        if (messageContentType == null) {
+            return false;
+        }
+        if (contentType.endsWith("/*")) {
+            return messageContentType.startsWith(contentType.substring(0, contentType.length() - 1));
+        }
+        return contentType.equals(messageContentType);
+    }
+
+    private boolean matchesRootElement(QName rootElement) {
+        if (!rootElementCondition) {
+            return true;
+        }
+        if (rootElement == null) {
+            return false;
+        }
+        return (
+            (rootNamespace == null || rootNamespace.equals(rootElement.getNamespaceURI())) &&
+            (WILDCARD.equals(rootLocalName) || rootLocalName.equals(rootElement.getLocalPart()))
+        );
+    }
+
+    private boolean matchesCondition(ExecutionContext executionContext) {
+        return condition == null || Boolean.TRUE.equals(executionContext.getTemplateEngine().getValue(condition, Boolean.class));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.routing;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.xslt.configuration.XSLTRoute;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.ConfiguredStylesheet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.namespace.QName;
+
+/**
+ * Select the stylesheet to apply to a message among the configured routes. Routes are evaluated in order and the
+ * first matching one wins.
+ *
+ * @author GraviteeSource Team
+ */
+public final class StylesheetRouter {
+
+    private static final StylesheetRouter EMPTY = new StylesheetRouter(Collections.emptyList());
+
+    private final List<StylesheetRoute> routes;
+    private final boolean contentTypeRequired;
+    private final boolean rootElementRequired;
+
+    private StylesheetRouter(List<StylesheetRoute> routes) {
+        this.routes = routes;
+        this.contentTypeRequired = routes.stream().anyMatch(StylesheetRoute::hasContentTypeCondition);
+        this.rootElementRequired = routes.stream().anyMatch(StylesheetRoute::hasRootElementCondition);
+    }
+
+    /**
+     * Parse the configured routes and start compiling their stylesheets.
+     *
+     * @throws IllegalArgumentException if a root element name is invalid.
+     */
+    public static StylesheetRouter compile(
+        List<XSLTRoute> routes,
+        CompilationOptions precompilationOptions,
+        CompletableFuture<CompilationOptions> resolvedOptions
+    ) {
+        if (routes == null || routes.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<StylesheetRoute> compiled = new ArrayList<>(routes.size());
+        for (XSLTRoute route : routes) {
+            if (route != null) {
+                compiled.add(new StylesheetRoute(route, precompilationOptions, resolvedOptions));
+            }
+        }
+        return new StylesheetRouter(compiled);
+    }
+
+    public boolean isEmpty() {
+        return routes.isEmpty();
+    }
+
+    /**
+     * @return <code>true</code> if a route depends on the content type of the message.
+     */
+    public boolean requiresContentType() {
+        return contentTypeRequired;
+    }
+
+    /**
+     * @return <code>true</code> if a route depends on the root element of the document, which must then be read
+     * before the transformation.
+     */
+    public boolean requiresRootElement() {
+        return rootElementRequired;
+    }
+
+    /**
+     * @param contentType the <code>Content-Type</code> header of the message, may be <code>null</code>.
+     * @param rootElement the root element of the document, <code>null</code> if unknown.
+     * @return the stylesheet of the first matching route, <code>null</code> if none matches.
+     */
+    public ConfiguredStylesheet route(ExecutionContext executionContext, String contentType, QName rootElement) {
+        String mediaType = toMediaType(contentType);
+        for (StylesheetRoute route : routes) {
+            if (route.matches(executionContext, mediaType, rootElement)) {
+                return route.getStylesheet();
+            }
+        }
+        return null;
+    }
+
+    private static String toMediaType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parameters = contentType.indexOf(';');
+        return (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim().toLowerCase(Locale.ROOT);
+    }
+}
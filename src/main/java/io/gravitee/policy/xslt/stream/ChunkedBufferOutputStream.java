@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.netty.buffer.Unpooled;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * {@link OutputStream} emitting what is written to it as a sequence of {@link Buffer} chunks of a fixed size.
+ *
+ * Each chunk is backed by its own array which is handed over to the consumer without any copy.
+ *
+ * @author GraviteeSource Team
+ */
+class ChunkedBufferOutputStream extends OutputStream {
+
+    private final int chunkSize;
+    private final Consumer<Buffer> chunkConsumer;
+
+    private byte[] chunk;
+    private int count;
+    private long written;
+
+    ChunkedBufferOutputStream(int chunkSize, Consumer<Buffer> chunkConsumer) {
+        this.chunkSize = chunkSize;
+        this.chunkConsumer = chunkConsumer;
+        this.chunk = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) {
+        if (count == chunkSize) {
+            emit();
+        }
+        chunk[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (count == chunkSize) {
+                emit();
+            }
+            int length = Math.min(len, chunkSize - count);
+            System.arraycopy(b, off, chunk, count, length);
+            count += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    /**
+     * Emit the pending bytes, if any. Unlike {@link #flush()}, which is called by serializers at will, this is only
+     * called once the whole result has been written.
+     */
+    void complete() {
+        if (count > 0) {
+            emit();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if at least one chunk has already been handed over to the consumer.
+     */
+    boolean isCommitted() {
+        return written > 0;
+    }
+
+    private void emit() {
+        Buffer buffer = Buffer.buffer(Unpooled.wrappedBuffer(chunk, 0, count));
+        written += count;
+        chunk = new byte[chunkSize];
+        count = 0;
+        chunkConsumer.accept(buffer);
+    }
+}
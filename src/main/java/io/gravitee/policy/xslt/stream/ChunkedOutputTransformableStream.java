@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.gateway.api.stream.BufferedReadWriteStream;
+import io.gravitee.gateway.api.stream.exception.TransformationException;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.xslt.utils.BufferInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transformable stream which, unlike {@link io.gravitee.gateway.api.stream.TransformableStream}, does not build the
+ * whole serialized result before sending it.
+ *
+ * The input is not streamed: Saxon-HE builds the whole source tree before transforming it, so the received chunks are
+ * all kept until the end of the body, as they are, and read through a single {@link java.io.InputStream}. Only the
+ * output is sent downstream chunk by chunk while it is being serialized, using chunked transfer encoding, which saves
+ * the result buffer and lets the client receive the first bytes earlier. A failure is always
+ * reported to the policy chain and the stream is never ended: once the first chunk has been sent, the headers are
+ * already gone, so the last chunk is withheld to let the client see an aborted transfer instead of a complete body.
+ *
+ * @author GraviteeSource Team
+ */
+public class ChunkedOutputTransformableStream extends BufferedReadWriteStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedOutputTransformableStream.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final HttpHeaders headers;
+    private final PolicyChain policyChain;
+    private final String contentType;
+    private final StreamTransformation transformation;
+    private final int chunkSize;
+
+    private final List<Buffer> chunks = new ArrayList<>();
+    private boolean ended;
+    private boolean committed;
+
+    public ChunkedOutputTransformableStream(
+        HttpHeaders headers,
+        PolicyChain policyChain,
+        String contentType,
+        StreamTransformation transformation
+    ) {
+        this(headers, policyChain, contentType, transformation, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedOutputTransformableStream(
+        HttpHeaders headers,
+        PolicyChain policyChain,
+        String contentType,
+        StreamTransformation transformation,
+        int chunkSize
+    ) {
+        this.headers = headers;
+        this.policyChain = policyChain;
+        this.contentType = contentType;
+        this.transformation = transformation;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public ChunkedOutputTransformableStream write(Buffer chunk) {
+        if (!ended) {
+            chunks.add(chunk);
+        }
+        return this;
+    }
+
+    @Override
+    public void end() {
+        ended = true;
+        ChunkedBufferOutputStream output = new ChunkedBufferOutputStream(chunkSize, this::send);
+
+        try {
+            transformation.transform(new BufferInputStream(chunks), output);
+            output.complete();
+
+            if (!committed) {
+                // Empty result, nothing has been sent
+                commitHeaders(false);
+            }
+        } catch (TransformationException tex) {
+            if (output.isCommitted()) {
+                LOGGER.error("Transformation failed after the response started to be sent, aborting the response", tex);
+            }
+            policyChain.streamFailWith(TransformationFailures.toPolicyResult(tex));
+            return;
+        } finally {
+            chunks.clear();
+        }
+
+        super.end();
+    }
+
+    private void send(Buffer chunk) {
+        if (!committed) {
+            commitHeaders(true);
+        }
+        super.write(chunk);
+    }
+
+    private void commitHeaders(boolean chunked) {
+        committed = true;
+        if (headers == null) {
+            return;
+        }
+
+        if (chunked) {
+            headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+            headers.set(HttpHeaderNames.TRANSFER_ENCODING, "chunked");
+        } else {
+            headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+            headers.set(HttpHeaderNames.CONTENT_LENGTH, "0");
+        }
+
+        if (contentType != null && !contentType.isEmpty()) {
+            headers.set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        }
+    }
+}
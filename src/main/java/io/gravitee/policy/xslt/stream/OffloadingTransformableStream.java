@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import io.gravitee.common.http.HttpStatusCode;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.gateway.api.stream.BufferedReadWriteStream;
+import io.gravitee.gateway.api.stream.exception.TransformationException;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.api.PolicyResult;
+import io.gravitee.policy.xslt.utils.BufferInputStream;
+import io.gravitee.policy.xslt.utils.BufferResult;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transformable stream which behaves like {@link io.gravitee.gateway.api.stream.TransformableStream} for small bodies,
+ * but runs the transformation of the bodies larger than a given threshold on a {@link TransformationExecutor}, so that
+ * the event loop which received them is free to serve other connections in the meantime.
+ *
+ * Once the transformation is done, the result is sent from the Vert.x context which ended the stream. If the executor
+ * is saturated, the transformation is not run at all and the chain fails with a <code>503 Service Unavailable</code>.
+ *
+ * Without executor, every body is transformed inline. Unlike {@link io.gravitee.gateway.api.stream.TransformableStream}
+ * which always fails with a <code>500 Internal Server Error</code>, a source document crossing one of its limits is
+ * reported as a client error.
+ *
+ * @author GraviteeSource Team
+ */
+public class OffloadingTransformableStream extends BufferedReadWriteStream {
+
+    private final HttpHeaders headers;
+    private final PolicyChain policyChain;
+    private final String contentType;
+    private final StreamTransformation transformation;
+    private final TransformationExecutor executor;
+    private final long threshold;
+
+    private final List<Buffer> chunks = new ArrayList<>();
+    private long length;
+    private boolean ended;
+
+    public OffloadingTransformableStream(
+        HttpHeaders headers,
+        PolicyChain policyChain,
+        String contentType,
+        StreamTransformation transformation,
+        TransformationExecutor executor,
+        long threshold
+    ) {
+        this.headers = headers;
+        this.policyChain = policyChain;
+        this.contentType = contentType;
+        this.transformation = transformation;
+        this.executor = executor;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public OffloadingTransformableStream write(Buffer chunk) {
+        if (!ended) {
+            chunks.add(chunk);
+            length += chunk.length();
+        }
+        return this;
+    }
+
+    @Override
+    public void end() {
+        ended = true;
+
+        if (executor == null || length < threshold) {
+            try {
+                complete(transform());
+            } catch (TransformationException tex) {
+                fail(tex);
+            }
+            return;
+        }
+
+        Context context = Vertx.currentContext();
+        boolean submitted = executor.execute(() -> {
+            try {
+                Buffer result = transform();
+                resume(context, () -> complete(result));
+            } catch (Throwable t) {
+                // Whatever happens, errors included (a recursive stylesheet, a tree too large for the heap), the stream
+                // must be ended or failed from its context, or the client would wait for a response forever
+                RuntimeException ex = t instanceof RuntimeException
+                    ? (RuntimeException) t
+                    : new TransformationException("Unable to apply XSL Transformation: " + t, t);
+                resume(context, () -> fail(ex));
+            }
+        });
+
+        if (!submitted) {
+            chunks.clear();
+            policyChain.streamFailWith(
+                PolicyResult.failure(HttpStatusCode.SERVICE_UNAVAILABLE_503, "Too many XSL transformations in progress")
+            );
+        }
+    }
+
+    private Buffer transform() throws TransformationException {
+        try {
+            BufferResult result = new BufferResult((int) Math.min(length, Integer.MAX_VALUE));
+            transformation.transform(new BufferInputStream(chunks), result.getOutputStream());
+            return result.toBuffer();
+        } finally {
+            chunks.clear();
+        }
+    }
+
+    private void complete(Buffer result) {
+        if (headers != null) {
+            headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+            headers.set(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(result.length()));
+            if (contentType != null && !contentType.isEmpty()) {
+                headers.set(HttpHeaderNames.CONTENT_TYPE, contentType);
+            }
+        }
+
+        super.write(result);
+        super.end();
+    }
+
+    private void fail(RuntimeException ex) {
+        policyChain.streamFailWith(TransformationFailures.toPolicyResult(ex));
+    }
+
+    private static void resume(Context context, Runnable action) {
+        if (context != null) {
+            context.runOnContext(v -> action.run());
+        } else {
+            action.run();
+        }
+    }
+}
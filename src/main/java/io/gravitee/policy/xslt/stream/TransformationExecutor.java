@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import io.gravitee.policy.xslt.utils.DaemonThreadFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded executor used to run transformations out of the event loop.
+ *
+ * At most <code>poolSize</code> transformations run at the same time and at most <code>queueSize</code> others wait for
+ * their turn. Any task submitted beyond that is rejected immediately, so that an overloaded API can not delay the
+ * transformations of the other ones indefinitely.
+ *
+ * Transformations run either on a fixed pool of platform threads or, when requested and supported by the JVM (Java 21
+ * and later), on virtual threads. In the latter case, the number of transformations running at the same time is still
+ * limited to <code>poolSize</code>.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TransformationExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransformationExecutor.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    private final ExecutorService executor;
+    private final Semaphore concurrency;
+    private final int poolSize;
+    private final int queueSize;
+
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private TransformationExecutor(ExecutorService executor, Semaphore concurrency, int poolSize, int queueSize) {
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.poolSize = poolSize;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param poolSize the maximum number of transformations running at the same time, must be greater than 0.
+     * @param queueSize the maximum number of transformations waiting to run.
+     * @param virtualThreads whether to run transformations on virtual threads, ignored if the JVM does not support them.
+     */
+    public static TransformationExecutor create(int poolSize, int queueSize, boolean virtualThreads) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Transformation pool size must be greater than 0");
+        }
+        if (queueSize < 0) {
+            throw new IllegalArgumentException("Transformation queue size must not be negative");
+        }
+
+        if (virtualThreads) {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor();
+            if (executor != null) {
+                return new TransformationExecutor(executor, new Semaphore(poolSize), poolSize, queueSize);
+            }
+            LOGGER.warn("Virtual threads are not supported by this JVM, transformations run on a fixed pool of {} threads", poolSize);
+        }
+
+        return new TransformationExecutor(
+            Executors.newFixedThreadPool(poolSize, new DaemonThreadFactory("gio-policy-xslt-")),
+            null,
+            poolSize,
+            queueSize
+        );
+    }
+
+    /**
+     * Submit a task for execution.
+     *
+     * @return <code>false</code> if the task has been rejected because the executor is saturated.
+     */
+    public boolean execute(Runnable task) {
+        if (inFlightCount.incrementAndGet() > poolSize + queueSize) {
+            inFlightCount.decrementAndGet();
+            rejectedCount.increment();
+            return false;
+        }
+
+        try {
+            executor.execute(() -> run(task));
+        } catch (RejectedExecutionException ree) {
+            inFlightCount.decrementAndGet();
+            rejectedCount.increment();
+            return false;
+        }
+
+        submittedCount.increment();
+        return true;
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return the number of transformations waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return Math.max(0, inFlightCount.get() - activeCount.get());
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private void run(Runnable task) {
+        if (concurrency != null) {
+            concurrency.acquireUninterruptibly();
+        }
+        activeCount.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            activeCount.decrementAndGet();
+            inFlightCount.decrementAndGet();
+            if (concurrency != null) {
+                concurrency.release();
+            }
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+}
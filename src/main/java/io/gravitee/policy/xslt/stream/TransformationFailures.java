@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import io.gravitee.common.http.HttpStatusCode;
+import io.gravitee.policy.api.PolicyResult;
+import io.gravitee.policy.xslt.utils.DocumentLimitException;
+
+/**
+ * Map a failed transformation to the result reported to the policy chain.
+ *
+ * @author GraviteeSource Team
+ */
+final class TransformationFailures {
+
+    private TransformationFailures() {}
+
+    /**
+     * @return a client error if the source document crossed one of its limits, an internal server error otherwise.
+     */
+    static PolicyResult toPolicyResult(RuntimeException ex) {
+        DocumentLimitException limitException = DocumentLimitException.find(ex);
+        if (limitException != null) {
+            return PolicyResult.failure(limitException.getStatusCode(), limitException.getMessage());
+        }
+        return PolicyResult.failure(HttpStatusCode.INTERNAL_SERVER_ERROR_500, ex.getMessage());
+    }
+}
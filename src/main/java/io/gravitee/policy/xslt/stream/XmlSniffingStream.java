@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.BufferedReadWriteStream;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
+import io.gravitee.policy.xslt.utils.XmlSniffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Stream which looks at the first bytes of the body before deciding whether it has to be transformed.
+ *
+ * The chunks are held until the first significant byte is received. If the body looks like XML, the transforming
+ * stream is created and receives all the chunks. Otherwise, including for empty or blank bodies, the chunks are sent
+ * downstream untouched and the headers are left as they are.
+ *
+ * @author GraviteeSource Team
+ */
+public class XmlSniffingStream extends BufferedReadWriteStream {
+
+    private final Supplier<ReadWriteStream<Buffer>> transformation;
+    private final Runnable onSkip;
+
+    private final List<Buffer> pending = new ArrayList<>();
+
+    private boolean decided;
+    private ReadWriteStream<Buffer> target;
+
+    /**
+     * @param transformation creates the stream transforming the body, called only if the body looks like XML.
+     * @param onSkip called when the body is left untouched.
+     */
+    public XmlSniffingStream(Supplier<ReadWriteStream<Buffer>> transformation, Runnable onSkip) {
+        this.transformation = transformation;
+        this.onSkip = onSkip;
+    }
+
+    @Override
+    public XmlSniffingStream write(Buffer chunk) {
+        if (decided) {
+            forward(chunk);
+            return this;
+        }
+
+        pending.add(chunk);
+        XmlSniffer.Result result = XmlSniffer.sniff(chunk);
+        if (result != XmlSniffer.Result.UNKNOWN) {
+            decide(result == XmlSniffer.Result.XML);
+        }
+        return this;
+    }
+
+    @Override
+    public void end() {
+        if (!decided) {
+            // Empty or blank body
+            decide(false);
+        }
+
+        if (target != null) {
+            target.end();
+        } else {
+            super.end();
+        }
+    }
+
+    private void decide(boolean xml) {
+        decided = true;
+
+        if (xml) {
+            target = transformation.get();
+            target.bodyHandler(XmlSniffingStream.super::write);
+            target.endHandler(v -> XmlSniffingStream.super.end());
+        } else {
+            onSkip.run();
+        }
+
+        for (Buffer chunk : pending) {
+            forward(chunk);
+        }
+        pending.clear();
+    }
+
+    private void forward(Buffer chunk) {
+        if (target != null) {
+            target.write(chunk);
+        } else {
+            super.write(chunk);
+        }
+    }
+}
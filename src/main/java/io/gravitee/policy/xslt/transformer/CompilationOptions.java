@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import java.util.Objects;
+
+/**
+ * Immutable settings used to compile a stylesheet.
+ *
+ * Two stylesheets compiled with different options are different templates: the options are part of the key used to
+ * cache compiled templates, so they must implement {@link #equals(Object)} and {@link #hashCode()}.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CompilationOptions {
+
+    public static final CompilationOptions DEFAULT = builder().build();
+
+    private final boolean secureProcessing;
+
+    private final EngineType engine;
+
+    private final boolean tracing;
+
+    private CompilationOptions(Builder builder) {
+        this.secureProcessing = builder.secureProcessing;
+        this.engine = builder.engine;
+        this.tracing = builder.tracing;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder initialized with these options.
+     */
+    public Builder toBuilder() {
+        return builder().secureProcessing(secureProcessing).engine(engine).tracing(tracing);
+    }
+
+    public boolean isSecureProcessing() {
+        return secureProcessing;
+    }
+
+    public EngineType getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return whether the stylesheet is compiled with trace instructions, so that a trace listener set on its transformers
+     * is notified of each instruction evaluated.
+     */
+    public boolean isTracing() {
+        return tracing;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompilationOptions that = (CompilationOptions) o;
+        return secureProcessing == that.secureProcessing && engine == that.engine && tracing == that.tracing;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(secureProcessing, engine, tracing);
+    }
+
+    @Override
+    public String toString() {
+        return "CompilationOptions{" + "secureProcessing=" + secureProcessing + ", engine=" + engine + ", tracing=" + tracing + '}';
+    }
+
+    public static final class Builder {
+
+        private boolean secureProcessing = true;
+
+        private EngineType engine = EngineType.S9API;
+
+        private boolean tracing;
+
+        private Builder() {}
+
+        public Builder secureProcessing(boolean secureProcessing) {
+            this.secureProcessing = secureProcessing;
+            return this;
+        }
+
+        public Builder engine(EngineType engine) {
+            this.engine = engine;
+            return this;
+        }
+
+        public Builder tracing(boolean tracing) {
+            this.tracing = tracing;
+            return this;
+        }
+
+        public CompilationOptions build() {
+            return new CompilationOptions(this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import net.sf.saxon.Configuration;
+
+/**
+ * A compiled stylesheet, thread-safe and reusable. Each transformation needs its own {@link StylesheetTransformer}.
+ *
+ * @author GraviteeSource Team
+ */
+public interface CompiledStylesheet {
+    /**
+     * @return the Saxon configuration the stylesheet has been compiled with. Nodes passed as parameters must be built
+     * with this configuration.
+     */
+    Configuration getConfiguration();
+
+    /**
+     * @return a transformer ready to be used, possibly one which has already been used and then
+     * {@link StylesheetTransformer#release() released}.
+     */
+    StylesheetTransformer newTransformer();
+
+    /**
+     * Called once the stylesheet is evicted from the cache, to drop what is kept for it such as its idle transformers.
+     * The stylesheet can still be used by the transformations already holding it.
+     */
+    default void dispose() {}
+}
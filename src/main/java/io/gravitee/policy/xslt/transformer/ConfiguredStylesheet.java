@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.xslt.metrics.TransformationTrace;
+import io.gravitee.policy.xslt.utils.ExpressionLanguageUtil;
+import io.gravitee.policy.xslt.utils.Fingerprint;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Stylesheet as written in the policy configuration.
+ *
+ * A stylesheet without any expression is compiled in the background as soon as it is configured, with the compilation
+ * options known at that time, and compiled again if the options resolved later turn out to differ. It is fingerprinted
+ * only once. A stylesheet with expressions goes through the template engine for
+ * each message. Either way, the compiled stylesheet is taken from the template cache for each message rather than kept
+ * here, so that the cache sees it is in use and stays the only one to evict and dispose it.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ConfiguredStylesheet {
+
+    private final String source;
+
+    /**
+     * Whether the stylesheet contains expressions which must be evaluated for each message
+     */
+    private final boolean dynamic;
+
+    /**
+     * Last background compilation started, <code>null</code> if the stylesheet contains expressions
+     */
+    private volatile Precompilation precompilation;
+
+    /**
+     * Fingerprint of the stylesheet, <code>null</code> if the stylesheet contains expressions
+     */
+    private final Fingerprint fingerprint;
+
+    /**
+     * @param precompilationOptions options to compile the stylesheet with right away, in the background.
+     * @param resolvedOptions options the stylesheet is eventually compiled with, it is compiled again once they are known
+     * if they differ from the first ones.
+     */
+    public ConfiguredStylesheet(
+        String source,
+        CompilationOptions precompilationOptions,
+        CompletableFuture<CompilationOptions> resolvedOptions
+    ) {
+        this.source = source;
+        this.dynamic = ExpressionLanguageUtil.containsExpression(source);
+        this.fingerprint = dynamic || source == null ? null : Fingerprint.of(source);
+        if (!dynamic && !isBlank()) {
+            precompile(precompilationOptions);
+            resolvedOptions.thenAccept(options -> {
+                if (!options.equals(precompilation.options)) {
+                    precompile(options);
+                }
+            });
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean isBlank() {
+        return source == null || source.isBlank();
+    }
+
+    /**
+     * @return the stylesheet to apply to the message: the source itself, once its expressions are evaluated.
+     */
+    public String resolve(ExecutionContext executionContext) {
+        // Get XSL stylesheet and transform it using internal template engine
+        return dynamic ? executionContext.getTemplateEngine().convert(source) : source;
+    }
+
+    /**
+     * @param stylesheet the stylesheet {@link #resolve(ExecutionContext) resolved} for the message.
+     */
+    public CompiledStylesheet get(String stylesheet, CompilationOptions compilationOptions, TransformationTrace trace) {
+        if (dynamic) {
+            return TransformerFactory.getInstance().getTemplate(stylesheet, compilationOptions, trace);
+        }
+
+        Precompilation current = precompilation;
+        if (current != null && current.result.isCompletedExceptionally() && compilationOptions.equals(current.options)) {
+            // The stylesheet is already known to be invalid, do not compile it again
+            try {
+                current.result.join();
+            } catch (CompletionException ce) {
+                throw ce.getCause() instanceof RuntimeException ? (RuntimeException) ce.getCause() : ce;
+            }
+        }
+
+        return TransformerFactory.getInstance().getTemplate(fingerprint, source, compilationOptions, trace);
+    }
+
+    private void precompile(CompilationOptions options) {
+        precompilation = new Precompilation(options, TransformerFactory.getInstance().precompile(source, options));
+    }
+
+    private static final class Precompilation {
+
+        private final CompilationOptions options;
+        private final CompletableFuture<Void> result;
+
+        private Precompilation(CompilationOptions options, CompletableFuture<Void> result) {
+            this.options = options;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+/**
+ * @author GraviteeSource Team
+ */
+public enum EngineType {
+    /**
+     * Saxon native API: stylesheets are compiled to an {@link net.sf.saxon.s9api.XsltExecutable} run by an
+     * {@link net.sf.saxon.s9api.Xslt30Transformer}.
+     */
+    S9API,
+
+    /**
+     * JAXP API: stylesheets are compiled to {@link javax.xml.transform.Templates} run by a
+     * {@link javax.xml.transform.Transformer}.
+     */
+    JAXP,
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.xml.transform.OutputKeys;
+
+/**
+ * Immutable serialization settings, overriding the <code>xsl:output</code> declaration of the stylesheet.
+ *
+ * A setting which is not set keeps the value declared by the stylesheet, except for the indentation: unless the
+ * stylesheet explicitly asks for it, the output is not indented, whatever the output method.
+ *
+ * @author GraviteeSource Team
+ */
+public final class OutputOptions {
+
+    public static final OutputOptions DEFAULT = builder().build();
+
+    private final String method;
+    private final Boolean indent;
+    private final String encoding;
+    private final Boolean omitXmlDeclaration;
+
+    /**
+     * Output properties to apply, depending on whether the stylesheet declares the indentation
+     */
+    private final Map<String, String> properties;
+    private final Map<String, String> propertiesWithDeclaredIndent;
+
+    private OutputOptions(Builder builder) {
+        this.method = builder.method;
+        this.indent = builder.indent;
+        this.encoding = builder.encoding;
+        this.omitXmlDeclaration = builder.omitXmlDeclaration;
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        if (method != null) {
+            properties.put(OutputKeys.METHOD, method);
+        }
+        if (encoding != null) {
+            properties.put(OutputKeys.ENCODING, encoding);
+        }
+        if (omitXmlDeclaration != null) {
+            properties.put(OutputKeys.OMIT_XML_DECLARATION, toYesNo(omitXmlDeclaration));
+        }
+        if (indent != null) {
+            properties.put(OutputKeys.INDENT, toYesNo(indent));
+        }
+        this.propertiesWithDeclaredIndent = Collections.unmodifiableMap(new LinkedHashMap<>(properties));
+
+        // Compact output by default
+        properties.putIfAbsent(OutputKeys.INDENT, "no");
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public Boolean getIndent() {
+        return indent;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public Boolean getOmitXmlDeclaration() {
+        return omitXmlDeclaration;
+    }
+
+    /**
+     * @param indentDeclared whether the <code>xsl:output</code> declaration of the stylesheet sets the indentation.
+     * @return the output properties to set on the serializer, keyed by their {@link OutputKeys} name.
+     */
+    public Map<String, String> getOutputProperties(boolean indentDeclared) {
+        return indentDeclared ? propertiesWithDeclaredIndent : properties;
+    }
+
+    private static String toYesNo(boolean value) {
+        return value ? "yes" : "no";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OutputOptions that = (OutputOptions) o;
+        return (
+            Objects.equals(method, that.method) &&
+            Objects.equals(indent, that.indent) &&
+            Objects.equals(encoding, that.encoding) &&
+            Objects.equals(omitXmlDeclaration, that.omitXmlDeclaration)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(method, indent, encoding, omitXmlDeclaration);
+    }
+
+    @Override
+    public String toString() {
+        return (
+            "OutputOptions{" +
+            "method=" +
+            method +
+            ", indent=" +
+            indent +
+            ", encoding=" +
+            encoding +
+            ", omitXmlDeclaration=" +
+            omitXmlDeclaration +
+            '}'
+        );
+    }
+
+    public static final class Builder {
+
+        private String method;
+        private Boolean indent;
+        private String encoding;
+        private Boolean omitXmlDeclaration;
+
+        private Builder() {}
+
+        public Builder method(String method) {
+            this.method = method == null || method.isBlank() ? null : method.trim();
+            return this;
+        }
+
+        public Builder indent(Boolean indent) {
+            this.indent = indent;
+            return this;
+        }
+
+        public Builder encoding(String encoding) {
+            this.encoding = encoding == null || encoding.isBlank() ? null : encoding.trim();
+            return this;
+        }
+
+        public Builder omitXmlDeclaration(Boolean omitXmlDeclaration) {
+            this.omitXmlDeclaration = omitXmlDeclaration;
+            return this;
+        }
+
+        public OutputOptions build() {
+            return new OutputOptions(this);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import io.gravitee.policy.xslt.utils.Fingerprint;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import net.sf.saxon.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local directory keeping the stylesheets compiled by the gateway, so that they can be compiled again as soon as it
+ * restarts instead of waiting for the first request using them.
+ *
+ * Saxon-HE can not export a compiled stylesheet (SEF export requires Saxon-EE), so the source of the stylesheet is
+ * stored along with the options used to compile it. Each entry also records the Saxon version and a checksum of the
+ * source: entries which can not be read, whose checksum does not match or which have been written by another Saxon
+ * version are deleted when the store is loaded.
+ *
+ * @author GraviteeSource Team
+ */
+class StylesheetStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StylesheetStore.class);
+
+    static final String FORMAT_VERSION = "2";
+
+    private static final String FILE_EXTENSION = ".xslt";
+
+    private static final String KEY_FORMAT_VERSION = "format-version";
+    private static final String KEY_SAXON_VERSION = "saxon-version";
+    private static final String KEY_CHECKSUM = "checksum";
+    private static final String KEY_ENGINE = "engine";
+    private static final String KEY_SECURE_PROCESSING = "secure-processing";
+    private static final String KEY_TRACING = "tracing";
+    private static final String KEY_STYLESHEET = "stylesheet";
+
+    private final Path directory;
+
+    StylesheetStore(Path directory) {
+        this.directory = directory;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Store a stylesheet, unless it is already stored with the same options.
+     */
+    void save(String xslt, CompilationOptions options) {
+        String fingerprint = Fingerprint.of(xslt).toString();
+        Path file = directory.resolve(fileName(fingerprint, options));
+        if (Files.exists(file)) {
+            touch(file);
+            return;
+        }
+
+        Properties entry = new Properties();
+        entry.setProperty(KEY_FORMAT_VERSION, FORMAT_VERSION);
+        entry.setProperty(KEY_SAXON_VERSION, Version.getProductVersion());
+        entry.setProperty(KEY_CHECKSUM, fingerprint);
+        entry.setProperty(KEY_ENGINE, options.getEngine().name());
+        entry.setProperty(KEY_SECURE_PROCESSING, Boolean.toString(options.isSecureProcessing()));
+        entry.setProperty(KEY_TRACING, Boolean.toString(options.isTracing()));
+        entry.setProperty(KEY_STYLESHEET, xslt);
+
+        try {
+            Files.createDirectories(directory);
+            // Write to a temporary file first, so that a crash never leaves a truncated entry behind
+            Path tmp = Files.createTempFile(directory, fingerprint, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                entry.store(writer, null);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to store XSLT stylesheet in {}", directory, ioe);
+        }
+    }
+
+    void remove(String xslt, CompilationOptions options) {
+        delete(directory.resolve(fileName(Fingerprint.of(xslt).toString(), options)));
+    }
+
+    /**
+     * Read the stored stylesheets, most recently used first. Invalid entries are deleted and the least recently used
+     * ones beyond <code>maximumSize</code> too.
+     */
+    List<StoredStylesheet> load(long maximumSize) {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            stream.forEach(files::add);
+        } catch (IOException ioe) {
+            if (Files.exists(directory)) {
+                LOGGER.warn("Unable to list XSLT stylesheets stored in {}", directory, ioe);
+            }
+            return new ArrayList<>();
+        }
+        files.sort(Comparator.comparing(StylesheetStore::lastModified).reversed());
+
+        List<StoredStylesheet> stylesheets = new ArrayList<>();
+        for (Path file : files) {
+            StoredStylesheet stylesheet = stylesheets.size() < maximumSize ? read(file) : null;
+            if (stylesheet != null) {
+                stylesheets.add(stylesheet);
+            } else {
+                delete(file);
+            }
+        }
+        return stylesheets;
+    }
+
+    private StoredStylesheet read(Path file) {
+        Properties entry = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            entry.load(reader);
+        } catch (IOException | IllegalArgumentException ex) {
+            LOGGER.debug("Stored XSLT stylesheet {} can not be read", file, ex);
+            return null;
+        }
+
+        String xslt = entry.getProperty(KEY_STYLESHEET);
+        if (
+            !FORMAT_VERSION.equals(entry.getProperty(KEY_FORMAT_VERSION)) ||
+            !Version.getProductVersion().equals(entry.getProperty(KEY_SAXON_VERSION)) ||
+            xslt == null ||
+            !Fingerprint.of(xslt).toString().equals(entry.getProperty(KEY_CHECKSUM))
+        ) {
+            LOGGER.debug("Stored XSLT stylesheet {} is outdated or corrupted", file);
+            return null;
+        }
+
+        CompilationOptions options;
+        try {
+            options =
+                CompilationOptions
+                    .builder()
+                    .engine(EngineType.valueOf(entry.getProperty(KEY_ENGINE)))
+                    .secureProcessing(Boolean.parseBoolean(entry.getProperty(KEY_SECURE_PROCESSING)))
+                    // Missing from the entries written before it was introduced
+                    .tracing(Boolean.parseBoolean(entry.getProperty(KEY_TRACING)))
+                    .build();
+        } catch (RuntimeException ex) {
+            LOGGER.debug("Stored XSLT stylesheet {} has invalid compilation options", file, ex);
+            return null;
+        }
+
+        if (!file.getFileName().toString().equals(fileName(entry.getProperty(KEY_CHECKSUM), options))) {
+            return null;
+        }
+
+        return new StoredStylesheet(xslt, options);
+    }
+
+    private static String fileName(String fingerprint, CompilationOptions options) {
+        String engine = options.getEngine().name().toLowerCase(Locale.ROOT);
+        String suffix = (options.isSecureProcessing() ? "" : "-unsecure") + (options.isTracing() ? "-traced" : "");
+        return fingerprint + '-' + engine + suffix + FILE_EXTENSION;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException ioe) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ioe) {
+            // Only used to keep the most recently used stylesheets, never mind
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to delete stored XSLT stylesheet {}", file, ioe);
+        }
+    }
+
+    static final class StoredStylesheet {
+
+        private final String xslt;
+        private final CompilationOptions options;
+
+        private StoredStylesheet(String xslt, CompilationOptions options) {
+            this.xslt = xslt;
+            this.options = options;
+        }
+
+        String getXslt() {
+            return xslt;
+        }
+
+        CompilationOptions getOptions() {
+            return options;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import net.sf.saxon.lib.TraceListener;
+
+/**
+ * Runs a single transformation of a {@link CompiledStylesheet}. Not thread-safe.
+ *
+ * @author GraviteeSource Team
+ */
+public interface StylesheetTransformer {
+    /**
+     * Set the value of a stylesheet parameter. Parameters not declared by the stylesheet are ignored.
+     *
+     * @param value a {@link String}, {@link java.math.BigDecimal}, {@link Boolean} or {@link net.sf.saxon.om.NodeInfo}.
+     */
+    void setParameter(QName name, Object value);
+
+    /**
+     * Set the options used to serialize the result, instead of {@link OutputOptions#DEFAULT}. In a pipeline, only the
+     * options of the last transformer apply.
+     */
+    void setOutputOptions(OutputOptions options);
+
+    /**
+     * Set the listener notified of the instructions evaluated by the transformation. Only the stylesheets compiled with
+     * {@link CompilationOptions#isTracing() tracing} notify it of every instruction.
+     *
+     * @param listener the listener, <code>null</code> to remove it.
+     */
+    void setTraceListener(TraceListener listener);
+
+    /**
+     * Transform the source document and serialize the result into the output stream, as specified by the
+     * <code>xsl:output</code> declaration of the stylesheet.
+     */
+    default void transform(Source source, OutputStream output) throws TransformerException {
+        transform(source, Collections.emptyList(), output);
+    }
+
+    /**
+     * Transform the source document, then apply each of the next transformers in turn to the result of the previous
+     * one. Intermediate results are passed as trees and never serialized: only the result of the last transformer is
+     * serialized into the output stream, as specified by its <code>xsl:output</code> declaration.
+     *
+     * @param next transformers of stylesheets compiled by the same engine.
+     */
+    void transform(Source source, List<StylesheetTransformer> next, OutputStream output) throws TransformerException;
+
+    /**
+     * Give the transformer back once its transformation has succeeded, so that it may be reset and reused by a next
+     * one. The transformer must not be used afterwards.
+     */
+    default void release() {}
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache of compiled stylesheets.
+ *
+ * The cache is bounded by a maximum number of entries (the least recently accessed entry is evicted first) and can
+ * optionally expire entries which have not been accessed for a given duration. Loading is single-flight: when several
+ * threads ask for the same missing key at the same time, only one of them runs the loader while the others wait for
+ * its result.
+ *
+ * A listener can be notified of the values removed from the cache, either evicted or invalidated.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TemplateCache<K, V> {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private volatile long maximumSize;
+    private volatile long expireAfterAccessNanos;
+    private volatile Consumer<? super V> removalListener = value -> {};
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    public TemplateCache() {
+        this(DEFAULT_MAXIMUM_SIZE, Duration.ZERO);
+    }
+
+    public TemplateCache(long maximumSize, Duration expireAfterAccess) {
+        configure(maximumSize, expireAfterAccess);
+    }
+
+    /**
+     * Update the cache bounds. A shrunk cache is trimmed on the next insertion.
+     *
+     * @param maximumSize the maximum number of entries, must be greater than 0.
+     * @param expireAfterAccess the idle duration after which an entry expires, {@link Duration#ZERO} to never expire.
+     */
+    public void configure(long maximumSize, Duration expireAfterAccess) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache maximum size must be greater than 0");
+        }
+        this.maximumSize = maximumSize;
+        this.expireAfterAccessNanos = expireAfterAccess == null || expireAfterAccess.isNegative() ? 0 : expireAfterAccess.toNanos();
+    }
+
+    /**
+     * @param listener called with each value removed from the cache, on the thread which removed it.
+     */
+    public TemplateCache<K, V> onRemoval(Consumer<? super V> listener) {
+        this.removalListener = listener;
+        return this;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        long now = System.nanoTime();
+        Entry<V> entry = entries.get(key);
+
+        if (entry != null && isExpired(entry, now)) {
+            if (entries.remove(key, entry)) {
+                evicted(entry);
+            }
+            entry = null;
+        }
+
+        if (entry == null) {
+            Entry<V> created = new Entry<>(now);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                missCount.increment();
+                return load(key, created, loader);
+            }
+        }
+
+        hitCount.increment();
+        entry.lastAccess = now;
+        return entry.join();
+    }
+
+    public void invalidateAll() {
+        Iterator<Entry<V>> ite = entries.values().iterator();
+        while (ite.hasNext()) {
+            Entry<V> entry = ite.next();
+            ite.remove();
+            removed(entry);
+        }
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    public TemplateCacheStats stats() {
+        return new TemplateCacheStats(
+            hitCount.sum(),
+            missCount.sum(),
+            evictionCount.sum(),
+            loadSuccessCount.sum(),
+            loadFailureCount.sum(),
+            totalLoadTime.sum(),
+            entries.size()
+        );
+    }
+
+    private V load(K key, Entry<V> entry, Function<K, V> loader) {
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (Throwable t) {
+            // Errors included (a stack overflow on a deeply recursive stylesheet...): an entry never completed would
+            // block forever the next callers asking for the same key
+            totalLoadTime.add(System.nanoTime() - start);
+            loadFailureCount.increment();
+            // Do not keep failures, the next call will try to load the value again
+            entries.remove(key, entry);
+            entry.future.completeExceptionally(t);
+            throw t;
+        }
+
+        totalLoadTime.add(System.nanoTime() - start);
+        loadSuccessCount.increment();
+        entry.future.complete(value);
+        evictIfNeeded();
+        return value;
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        long expireAfterAccess = expireAfterAccessNanos;
+        return expireAfterAccess > 0 && entry.future.isDone() && now - entry.lastAccess > expireAfterAccess;
+    }
+
+    private void evictIfNeeded() {
+        long now = System.nanoTime();
+
+        if (expireAfterAccessNanos > 0) {
+            Iterator<Map.Entry<K, Entry<V>>> ite = entries.entrySet().iterator();
+            while (ite.hasNext()) {
+                Map.Entry<K, Entry<V>> candidate = ite.next();
+                if (isExpired(candidate.getValue(), now) && entries.remove(candidate.getKey(), candidate.getValue())) {
+                    evicted(candidate.getValue());
+                }
+            }
+        }
+
+        while (entries.size() > maximumSize) {
+            Map.Entry<K, Entry<V>> eldest = null;
+            for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+                // Never evict an entry which is still loading, its waiters rely on it
+                if (
+                    candidate.getValue().future.isDone() &&
+                    (eldest == null || candidate.getValue().lastAccess - eldest.getValue().lastAccess < 0)
+                ) {
+                    eldest = candidate;
+                }
+            }
+
+            if (eldest == null) {
+                return;
+            }
+
+            if (entries.remove(eldest.getKey(), eldest.getValue())) {
+                evicted(eldest.getValue());
+            }
+        }
+    }
+
+    private void evicted(Entry<V> entry) {
+        evictionCount.increment();
+        removed(entry);
+    }
+
+    private void removed(Entry<V> entry) {
+        // Only invalidateAll removes entries still loading: their value is given to the waiters, not to the listener
+        if (entry.future.isDone() && !entry.future.isCompletedExceptionally()) {
+            removalListener.accept(entry.future.join());
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private volatile long lastAccess;
+
+        private Entry(long lastAccess) {
+            this.lastAccess = lastAccess;
+        }
+
+        private V join() {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+    }
+}
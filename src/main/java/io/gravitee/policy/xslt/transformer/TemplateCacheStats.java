@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+/**
+ * Point-in-time snapshot of the {@link TemplateCache} counters.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TemplateCacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long size;
+
+    public TemplateCacheStats(
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long loadSuccessCount,
+        long loadFailureCount,
+        long totalLoadTime,
+        long size
+    ) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.size = size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * @return the total time spent compiling stylesheets, in nanoseconds.
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return the average time spent compiling a stylesheet, in nanoseconds.
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    @Override
+    public String toString() {
+        return (
+            "TemplateCacheStats{" +
+            "hitCount=" +
+            hitCount +
+            ", missCount=" +
+            missCount +
+            ", evictionCount=" +
+            evictionCount +
+            ", loadSuccessCount=" +
+            loadSuccessCount +
+            ", loadFailureCount=" +
+            loadFailureCount +
+            ", totalLoadTime=" +
+            totalLoadTime +
+            ", size=" +
+            size +
+            '}'
+        );
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import io.gravitee.policy.xslt.utils.Fingerprint;
+
+/**
+ * Key of a compiled template: the stylesheet fingerprint and the options it has been compiled with.
+ *
+ * The fingerprint is not collision-free, so the stylesheet itself is kept to tell apart two different stylesheets
+ * with the same fingerprint.
+ *
+ * @author GraviteeSource Team
+ */
+final class TemplateKey {
+
+    private final Fingerprint fingerprint;
+    private final CompilationOptions options;
+    private final String xslt;
+
+    TemplateKey(Fingerprint fingerprint, CompilationOptions options, String xslt) {
+        this.fingerprint = fingerprint;
+        this.options = options;
+        this.xslt = xslt;
+    }
+
+    Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    CompilationOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TemplateKey that = (TemplateKey) o;
+        return fingerprint.equals(that.fingerprint) && options.equals(that.options) && xslt.equals(that.xslt);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * fingerprint.hashCode() + options.hashCode();
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import net.sf.saxon.trans.XPathException;
+
+/**
+ * Thrown when a transformation is stopped because it went over its {@link TransformationBudget}.
+ *
+ * Saxon reports it as is, or as the cause of the exception thrown by the transformer: use {@link #find(Throwable)} to
+ * get it back.
+ *
+ * @author GraviteeSource Team
+ */
+public class TransformationAbortedException extends XPathException {
+
+    public enum Reason {
+        TIMEOUT("time budget", "ms"),
+        STEPS("evaluation step budget", "steps");
+
+        private final String description;
+        private final String unit;
+
+        Reason(String description, String unit) {
+            this.description = description;
+            this.unit = unit;
+        }
+    }
+
+    private final Reason reason;
+
+    public TransformationAbortedException(Reason reason, long budget) {
+        super("XSL transformation aborted, it exceeded its " + reason.description + " (" + budget + ' ' + reason.unit + ")");
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the first {@link TransformationAbortedException} of the causes of the given exception, the exception
+     * included, or <code>null</code> if there is none.
+     */
+    public static TransformationAbortedException find(Throwable throwable) {
+        Throwable current = throwable;
+        // Bounded, in case of a cycle in the causes
+        for (int i = 0; current != null && i < 32; i++) {
+            if (current instanceof TransformationAbortedException) {
+                return (TransformationAbortedException) current;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+}
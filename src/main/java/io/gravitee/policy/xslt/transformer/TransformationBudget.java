@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import java.time.Duration;
+import java.util.Map;
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.lib.TraceListener;
+import net.sf.saxon.om.Item;
+import net.sf.saxon.trace.Traceable;
+import net.sf.saxon.trans.UncheckedXPathException;
+
+/**
+ * Time and evaluation step budget of a single transformation, shared by all the stylesheets of a pipeline.
+ *
+ * The budget is a trace listener: it is only notified of the instructions evaluated by stylesheets compiled with
+ * {@link CompilationOptions#isTracing() tracing}. A step is an instruction entered, or an item processed by
+ * <code>xsl:for-each</code> or <code>xsl:apply-templates</code>. Once the budget is exceeded, the next step throws a
+ * {@link TransformationAbortedException}, which stops the transformation and frees the thread running it.
+ *
+ * The time is counted from the creation of the budget and only checked between two steps, so a single long step (a
+ * large sort, an expensive regular expression...) is not interrupted.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TransformationBudget implements TraceListener {
+
+    /**
+     * Reading the clock is more expensive than most instructions, it is only read every so many steps
+     */
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private final long timeoutMillis;
+    private final long maxSteps;
+    private final long deadline;
+
+    private long steps;
+
+    /**
+     * @param timeout the maximum duration of the transformation, {@link Duration#ZERO} for no limit.
+     * @param maxSteps the maximum number of evaluation steps, <code>0</code> for no limit.
+     */
+    public TransformationBudget(Duration timeout, long maxSteps) {
+        this.timeoutMillis = timeout.toMillis();
+        this.maxSteps = maxSteps;
+        this.deadline = System.nanoTime() + timeout.toNanos();
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    @Override
+    public void enter(Traceable instruction, Map<String, Object> properties, XPathContext context) {
+        step();
+    }
+
+    @Override
+    public void startCurrentItem(Item currentItem) {
+        step();
+    }
+
+    private void step() {
+        steps++;
+        if (maxSteps > 0 && steps > maxSteps) {
+            throw new UncheckedXPathException(new TransformationAbortedException(TransformationAbortedException.Reason.STEPS, maxSteps));
+        }
+        if (timeoutMillis > 0 && steps % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            throw new UncheckedXPathException(
+                new TransformationAbortedException(TransformationAbortedException.Reason.TIMEOUT, timeoutMillis)
+            );
+        }
+    }
+}
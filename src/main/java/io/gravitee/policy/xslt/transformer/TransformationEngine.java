@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+/**
+ * Compiles stylesheets for a given XSLT processor API.
+ *
+ * @author GraviteeSource Team
+ */
+public interface TransformationEngine {
+    CompiledStylesheet compile(String xslt, CompilationOptions options) throws Exception;
+
+    /**
+     * Set the maximum number of idle transformers kept for each stylesheet, for the engines able to reuse them.
+     *
+     * @param maximumIdle the maximum number of idle transformers, <code>0</code> to never reuse them.
+     */
+    default void configureTransformerPool(int maximumIdle) {}
+}
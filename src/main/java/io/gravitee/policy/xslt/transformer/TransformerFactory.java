@@ -15,18 +15,21 @@
  */
 package io.gravitee.policy.xslt.transformer;
 
-import io.gravitee.gateway.api.buffer.Buffer;
-import io.gravitee.policy.xslt.transformer.saxon.SaxonTransformerFactory;
-import io.gravitee.policy.xslt.utils.SAXSourceUtil;
-import io.gravitee.policy.xslt.utils.Sha1;
-import java.util.HashMap;
+import io.gravitee.policy.xslt.metrics.TransformationTrace;
+import io.gravitee.policy.xslt.transformer.jaxp.JaxpTransformationEngine;
+import io.gravitee.policy.xslt.transformer.s9api.S9apiTransformationEngine;
+import io.gravitee.policy.xslt.utils.DaemonThreadFactory;
+import io.gravitee.policy.xslt.utils.Fingerprint;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.Map;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Templates;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.sax.SAXSource;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import net.sf.saxon.Configuration;
+import net.sf.saxon.lib.Feature;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -34,55 +37,193 @@ import org.slf4j.LoggerFactory;
  */
 public final class TransformerFactory {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(TransformerFactory.class);
+    /**
+     * Saxon configuration shared by both engines, so that all the stylesheets and documents use the same name pool
+     */
+    private final Configuration configuration = new Configuration();
 
-    private final Map<String, Templates> templateCache = new HashMap<>();
-    private boolean secureProcessing = true;
+    private final TemplateCache<TemplateKey, CompiledStylesheet> templateCache = new TemplateCache<>();
+
+    private final Map<EngineType, TransformationEngine> engines = new EnumMap<>(EngineType.class);
+
+    /**
+     * Stylesheets compiled in the background, weakly referenced so that they are forgotten with the APIs using them
+     */
+    private final Map<String, Precompilation> precompilations = new WeakHashMap<>();
+
+    private final Executor precompilationExecutor = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+        new DaemonThreadFactory("gio-policy-xslt-precompile-")
+    );
+
+    private volatile StylesheetStore store;
 
     private static final TransformerFactory _instance = new TransformerFactory();
 
+    private TransformerFactory() {
+        configuration.setConfigurationProperty(Feature.ALLOWED_PROTOCOLS, "");
+        configuration.setConfigurationProperty(Feature.ALLOW_EXTERNAL_FUNCTIONS, false);
+        templateCache.onRemoval(CompiledStylesheet::dispose);
+        engines.put(EngineType.S9API, new S9apiTransformationEngine(configuration));
+        engines.put(EngineType.JAXP, new JaxpTransformationEngine(configuration));
+    }
+
     public static TransformerFactory getInstance() {
         return _instance;
     }
 
-    public TransformerFactory setSecureProcessing(boolean secureProcessing) {
-        this.secureProcessing = secureProcessing;
+    public TransformerFactory configureCache(long maximumSize, Duration expireAfterAccess) {
+        templateCache.configure(maximumSize, expireAfterAccess);
+        return this;
+    }
+
+    /**
+     * Select the tree built for the documents to transform. It applies to the transformations started afterwards,
+     * whatever the engine which compiled their stylesheet.
+     */
+    public TransformerFactory configureTreeModel(TreeModelType treeModel) {
+        configuration.setTreeModel(treeModel.getTreeModel().getSymbolicValue());
+        return this;
+    }
+
+    /**
+     * @param maximumIdle the maximum number of idle transformers kept for each stylesheet, <code>0</code> to never
+     * reuse them.
+     */
+    public TransformerFactory configureTransformerPool(int maximumIdle) {
+        engines.values().forEach(engine -> engine.configureTransformerPool(maximumIdle));
+        return this;
+    }
+
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    public TemplateCacheStats getCacheStats() {
+        return templateCache.stats();
+    }
+
+    /**
+     * Keep the precompiled stylesheets in a local directory and precompile, in the background, the ones already stored
+     * there. Calling it again with the same directory has no effect.
+     *
+     * @param directory the directory, <code>null</code> to stop storing stylesheets.
+     */
+    public TransformerFactory configureStore(Path directory) {
+        StylesheetStore current = store;
+        if (directory == null) {
+            store = null;
+        } else if (current == null || !current.getDirectory().equals(directory)) {
+            synchronized (this) {
+                current = store;
+                if (current == null || !current.getDirectory().equals(directory)) {
+                    StylesheetStore newStore = new StylesheetStore(directory);
+                    store = newStore;
+                    precompilationExecutor.execute(() -> warmUp(newStore));
+                }
+            }
+        }
         return this;
     }
 
-    public Templates getTemplate(String xslt) {
-        String sha1 = Sha1.sha1(xslt);
-        return templateCache.computeIfAbsent(
-            sha1,
+    /**
+     * Discard all the compiled stylesheets, they will be compiled again on their next use.
+     */
+    public void invalidateCache() {
+        templateCache.invalidateAll();
+    }
+
+    /**
+     * Compile a stylesheet in the background and keep it in cache, so that it is ready when it is first used.
+     *
+     * Asking several times for the same stylesheet and options returns the same result, including a failure. Only the
+     * last options asked for a given stylesheet are remembered.
+     *
+     * @return the end of the compilation. The compiled stylesheet is only held by the cache, so that it can be evicted
+     * and disposed while the stylesheet is still configured.
+     */
+    public CompletableFuture<Void> precompile(String xslt, CompilationOptions options) {
+        synchronized (precompilations) {
+            Precompilation precompilation = precompilations.get(xslt);
+            if (precompilation == null || !precompilation.options.equals(options)) {
+                precompilation =
+                    new Precompilation(
+                        options,
+                        CompletableFuture.runAsync(() -> compileAndStore(xslt, options), precompilationExecutor)
+                    );
+                precompilations.put(xslt, precompilation);
+            }
+            return precompilation.result;
+        }
+    }
+
+    private void compileAndStore(String xslt, CompilationOptions options) {
+        getTemplate(xslt, options);
+        StylesheetStore current = store;
+        if (current != null) {
+            current.save(xslt, options);
+        }
+    }
+
+    private void warmUp(StylesheetStore store) {
+        for (StylesheetStore.StoredStylesheet stylesheet : store.load(templateCache.getMaximumSize())) {
+            precompile(stylesheet.getXslt(), stylesheet.getOptions())
+                .whenComplete(
+                    (compiled, ex) -> {
+                        if (ex != null) {
+                            // Compiled fine before, but not anymore, don't try again on next restart
+                            store.remove(stylesheet.getXslt(), stylesheet.getOptions());
+                        }
+                    }
+                );
+        }
+    }
+
+    public CompiledStylesheet getTemplate(String xslt, CompilationOptions options) {
+        return getTemplate(xslt, options, null);
+    }
+
+    /**
+     * @param trace if not <code>null</code>, receives the fingerprint of the stylesheet and its compilation time when it
+     * is not already in cache.
+     */
+    public CompiledStylesheet getTemplate(String xslt, CompilationOptions options, TransformationTrace trace) {
+        return getTemplate(Fingerprint.of(xslt), xslt, options, trace);
+    }
+
+    /**
+     * @param fingerprint the fingerprint of the stylesheet, when already known.
+     */
+    CompiledStylesheet getTemplate(Fingerprint fingerprint, String xslt, CompilationOptions options, TransformationTrace trace) {
+        if (trace != null) {
+            trace.stylesheet(fingerprint.toString());
+        }
+
+        return templateCache.get(
+            new TemplateKey(fingerprint, options, xslt),
             key -> {
+                long start = System.nanoTime();
                 try {
-                    return createTemplate(xslt);
+                    return engines.get(options.getEngine()).compile(xslt, options);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
+                } finally {
+                    if (trace != null) {
+                        trace.compiled(System.nanoTime() - start);
+                    }
                 }
             }
         );
     }
 
-    private Templates createTemplate(String xslt) throws Exception {
-        javax.xml.transform.TransformerFactory factory = getTransformerFactory();
-        SAXSource saxSource = SAXSourceUtil.createSAXSource(Buffer.buffer(xslt), secureProcessing);
+    private static final class Precompilation {
 
-        try {
-            Templates templates = factory.newTemplates(saxSource);
-            templates.getOutputProperties().setProperty(OutputKeys.INDENT, "yes");
-            templates.getOutputProperties().setProperty("{http://xml.apache.org/xslt}indent-amount", "3");
-            return templates;
-        } catch (TransformerConfigurationException tcex) {
-            LOGGER.error("An error occurs while getting the template from XSLT", tcex);
-            throw tcex;
-        }
-    }
+        private final CompilationOptions options;
+        private final CompletableFuture<Void> result;
 
-    private javax.xml.transform.TransformerFactory getTransformerFactory() {
-        return javax.xml.transform.TransformerFactory.newInstance(
-            SaxonTransformerFactory.class.getName(),
-            this.getClass().getClassLoader()
-        );
+        private Precompilation(CompilationOptions options, CompletableFuture<Void> result) {
+            this.options = options;
+            this.result = result;
+        }
     }
 }
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of the idle transformers of a stylesheet.
+ *
+ * Transformers are taken back in the reverse order they were released: the thread which has just released a transformer
+ * gets it back for its next message, so that each event-loop thread ends up reusing its own transformers. Transformers
+ * released while the pool is full, or once it is closed, are left to the garbage collector.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TransformerPool<T> {
+
+    /**
+     * Number of event-loop threads of the gateway by default
+     */
+    public static final int DEFAULT_MAXIMUM_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final Deque<T> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private final Supplier<T> factory;
+    private final IntSupplier maximumIdle;
+
+    private volatile boolean closed;
+
+    /**
+     * @param factory creates a transformer when none is idle.
+     * @param maximumIdle the maximum number of idle transformers, read on each release so that it can be updated.
+     */
+    public TransformerPool(Supplier<T> factory, IntSupplier maximumIdle) {
+        this.factory = factory;
+        this.maximumIdle = maximumIdle;
+    }
+
+    public T acquire() {
+        T transformer = idle.pollFirst();
+        if (transformer == null) {
+            return factory.get();
+        }
+        idleCount.decrementAndGet();
+        return transformer;
+    }
+
+    /**
+     * @param transformer a transformer ready to be used again.
+     */
+    public void release(T transformer) {
+        if (closed) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > maximumIdle.getAsInt()) {
+            idleCount.decrementAndGet();
+            return;
+        }
+
+        idle.offerFirst(transformer);
+        if (closed) {
+            // Closed meanwhile
+            clear();
+        }
+    }
+
+    /**
+     * Drop the idle transformers and stop keeping the released ones. Transformers can still be acquired.
+     */
+    public void close() {
+        closed = true;
+        clear();
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    private void clear() {
+        while (idle.pollFirst() != null) {
+            idleCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import net.sf.saxon.om.TreeModel;
+
+/**
+ * Tree built in memory for the document to transform.
+ *
+ * @author GraviteeSource Team
+ */
+public enum TreeModelType {
+    /**
+     * Saxon default: a compact tree made of a few arrays, fast to build and to navigate.
+     */
+    TINY(TreeModel.TINY_TREE),
+
+    /**
+     * Same as {@link #TINY}, but text and attribute values which appear several times are only stored once. Takes a
+     * bit longer to build, uses less memory for repetitive documents.
+     */
+    CONDENSED(TreeModel.TINY_TREE_CONDENSED),
+
+    /**
+     * One object per node. Uses more memory, mostly useful to compare with the other models.
+     */
+    LINKED(TreeModel.LINKED_TREE);
+
+    private final TreeModel treeModel;
+
+    TreeModelType(TreeModel treeModel) {
+        this.treeModel = treeModel;
+    }
+
+    public TreeModel getTreeModel() {
+        return treeModel;
+    }
+}
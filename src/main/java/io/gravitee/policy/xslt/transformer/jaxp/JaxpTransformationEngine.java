@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer.jaxp;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.CompiledStylesheet;
+import io.gravitee.policy.xslt.transformer.OutputOptions;
+import io.gravitee.policy.xslt.transformer.StylesheetTransformer;
+import io.gravitee.policy.xslt.transformer.TransformationEngine;
+import io.gravitee.policy.xslt.transformer.TransformerPool;
+import io.gravitee.policy.xslt.transformer.saxon.SaxonTransformerFactory;
+import io.gravitee.policy.xslt.utils.SAXSourceUtil;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.IntSupplier;
+import javax.xml.namespace.QName;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import net.sf.saxon.Configuration;
+import net.sf.saxon.jaxp.TemplatesImpl;
+import net.sf.saxon.jaxp.TransformerImpl;
+import net.sf.saxon.lib.TraceListener;
+import net.sf.saxon.s9api.XsltCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Engine going through the JAXP API, kept as a fallback of the native Saxon engine.
+ *
+ * Creating a JAXP transformer allocates a whole controller, so the transformers of each stylesheet are kept in a
+ * {@link TransformerPool} once released, and reset before being reused.
+ *
+ * @author David BRASSELY (david.brassely at graviteesource.com)
+ * @author GraviteeSource Team
+ */
+public class JaxpTransformationEngine implements TransformationEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JaxpTransformationEngine.class);
+
+    private final SaxonTransformerFactory factory;
+
+    private volatile int maximumIdleTransformers = TransformerPool.DEFAULT_MAXIMUM_IDLE;
+
+    /**
+     * @param configuration the Saxon configuration shared by all the stylesheets.
+     */
+    public JaxpTransformationEngine(Configuration configuration) {
+        this.factory = new SaxonTransformerFactory(configuration);
+    }
+
+    @Override
+    public CompiledStylesheet compile(String xslt, CompilationOptions options) throws Exception {
+        SAXSource saxSource = SAXSourceUtil.createSAXSource(Buffer.buffer(xslt), options.isSecureProcessing());
+
+        try {
+            return new JaxpCompiledStylesheet(newTemplates(saxSource, options), () -> maximumIdleTransformers);
+        } catch (TransformerConfigurationException tcex) {
+            LOGGER.error("An error occurs while getting the template from XSLT", tcex);
+            throw tcex;
+        }
+    }
+
+    private Templates newTemplates(Source source, CompilationOptions options) throws TransformerConfigurationException {
+        if (!options.isTracing()) {
+            return factory.newTemplates(source);
+        }
+
+        // The factory has no option for it, the compiler settings are given instead
+        XsltCompiler compiler = factory.getProcessor().newXsltCompiler();
+        compiler.setCompileWithTracing(true);
+        return factory.newTemplates(source, compiler.getUnderlyingCompilerInfo());
+    }
+
+    @Override
+    public void configureTransformerPool(int maximumIdle) {
+        this.maximumIdleTransformers = maximumIdle;
+    }
+
+    private static class JaxpCompiledStylesheet implements CompiledStylesheet {
+
+        private final Templates templates;
+        private final boolean indentDeclared;
+        private final TransformerPool<JaxpStylesheetTransformer> pool;
+
+        private JaxpCompiledStylesheet(Templates templates, IntSupplier maximumIdleTransformers) {
+            this.templates = templates;
+            // Only the properties declared by the stylesheet are returned, without the defaults of the output method
+            this.indentDeclared = templates.getOutputProperties().getProperty(OutputKeys.INDENT) != null;
+            this.pool = new TransformerPool<>(this::createTransformer, maximumIdleTransformers);
+        }
+
+        @Override
+        public Configuration getConfiguration() {
+            return ((TemplatesImpl) templates).getImplementation().getProcessor().getUnderlyingConfiguration();
+        }
+
+        @Override
+        public StylesheetTransformer newTransformer() {
+            return pool.acquire();
+        }
+
+        @Override
+        public void dispose() {
+            pool.close();
+        }
+
+        private JaxpStylesheetTransformer createTransformer() {
+            try {
+                return new JaxpStylesheetTransformer(templates.newTransformer(), indentDeclared, pool);
+            } catch (TransformerConfigurationException tcex) {
+                throw new IllegalStateException(tcex);
+            }
+        }
+    }
+
+    private static class JaxpStylesheetTransformer implements StylesheetTransformer {
+
+        private final Transformer transformer;
+        private final boolean indentDeclared;
+        private final TransformerPool<JaxpStylesheetTransformer> pool;
+
+        private JaxpStylesheetTransformer(
+            Transformer transformer,
+            boolean indentDeclared,
+            TransformerPool<JaxpStylesheetTransformer> pool
+        ) {
+            this.transformer = transformer;
+            this.indentDeclared = indentDeclared;
+            this.pool = pool;
+            setOutputOptions(OutputOptions.DEFAULT);
+        }
+
+        @Override
+        public void setParameter(QName name, Object value) {
+            transformer.setParameter(name.toString(), value);
+        }
+
+        @Override
+        public void setOutputOptions(OutputOptions options) {
+            // Back to the xsl:output declaration, then override it
+            transformer.setOutputProperties(null);
+            options.getOutputProperties(indentDeclared).forEach(transformer::setOutputProperty);
+        }
+
+        @Override
+        public void setTraceListener(TraceListener listener) {
+            ((TransformerImpl) transformer).getUnderlyingController().setTraceListener(listener);
+        }
+
+        @Override
+        public void transform(Source source, List<StylesheetTransformer> next, OutputStream output) throws TransformerException {
+            // Build the chain from its end: each stage is a handler building a tree from the events of the previous one
+            Result result = new StreamResult(output);
+            for (int i = next.size() - 1; i >= 0; i--) {
+                Transformer stage = ((JaxpStylesheetTransformer) next.get(i)).transformer;
+                if (!(stage instanceof TransformerImpl)) {
+                    throw new TransformerException("Stylesheet can not be applied to the result of another stylesheet");
+                }
+                // Unlike the factory, the Saxon transformer gives a handler which keeps the parameters already set
+                TransformerHandler handler = ((TransformerImpl) stage).newTransformerHandler();
+                handler.setResult(result);
+                result = new SAXResult(handler);
+            }
+            transformer.transform(source, result);
+        }
+
+        @Override
+        public void release() {
+            // Back to the state of a new transformer: default error listener and output properties, no parameter, which
+            // the Saxon transformer keeps on reset, and no trace listener
+            transformer.reset();
+            transformer.clearParameters();
+            setOutputOptions(OutputOptions.DEFAULT);
+            setTraceListener(null);
+            pool.release(this);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer.s9api;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.CompiledStylesheet;
+import io.gravitee.policy.xslt.transformer.OutputOptions;
+import io.gravitee.policy.xslt.transformer.StylesheetTransformer;
+import io.gravitee.policy.xslt.transformer.TransformationEngine;
+import io.gravitee.policy.xslt.transformer.TransformerPool;
+import io.gravitee.policy.xslt.utils.SAXSourceUtil;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.IntSupplier;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXSource;
+import net.sf.saxon.Configuration;
+import net.sf.saxon.Controller;
+import net.sf.saxon.expr.parser.Loc;
+import net.sf.saxon.expr.parser.RoleDiagnostic;
+import net.sf.saxon.lib.TraceListener;
+import net.sf.saxon.om.GroundedValue;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.s9api.Destination;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.Serializer;
+import net.sf.saxon.s9api.XdmValue;
+import net.sf.saxon.s9api.Xslt30Transformer;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+import net.sf.saxon.str.StringView;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.value.BigDecimalValue;
+import net.sf.saxon.value.BooleanValue;
+import net.sf.saxon.value.StringValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Engine using the Saxon native API. All the stylesheets are compiled by a single {@link Processor}, and each
+ * transformation runs in a lightweight {@link Xslt30Transformer}.
+ *
+ * Once it has run, an {@link Xslt30Transformer} keeps the global variables computed for its first document and refuses
+ * new parameters. Only the transformers of the stylesheets without any global variable or parameter are reused: they
+ * are kept in a {@link TransformerPool} once released, and their controller is reset before being reused.
+ *
+ * @author GraviteeSource Team
+ */
+public class S9apiTransformationEngine implements TransformationEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(S9apiTransformationEngine.class);
+
+    private final Processor processor;
+
+    private volatile int maximumIdleTransformers = TransformerPool.DEFAULT_MAXIMUM_IDLE;
+
+    /**
+     * @param configuration the Saxon configuration shared by all the stylesheets.
+     */
+    public S9apiTransformationEngine(Configuration configuration) {
+        this.processor = new Processor(configuration);
+    }
+
+    @Override
+    public CompiledStylesheet compile(String xslt, CompilationOptions options) throws Exception {
+        SAXSource saxSource = SAXSourceUtil.createSAXSource(Buffer.buffer(xslt), options.isSecureProcessing());
+
+        try {
+            XsltCompiler compiler = processor.newXsltCompiler();
+            compiler.setCompileWithTracing(options.isTracing());
+            return new S9apiCompiledStylesheet(compiler.compile(saxSource), () -> maximumIdleTransformers);
+        } catch (SaxonApiException saex) {
+            LOGGER.error("An error occurs while compiling the XSLT", saex);
+            throw saex;
+        }
+    }
+
+    @Override
+    public void configureTransformerPool(int maximumIdle) {
+        this.maximumIdleTransformers = maximumIdle;
+    }
+
+    private static class S9apiCompiledStylesheet implements CompiledStylesheet {
+
+        private final XsltExecutable executable;
+        private final boolean indentDeclared;
+
+        /**
+         * Idle transformers, <code>null</code> if the stylesheet has global variables or parameters
+         */
+        private final TransformerPool<S9apiStylesheetTransformer> pool;
+
+        private S9apiCompiledStylesheet(XsltExecutable executable, IntSupplier maximumIdleTransformers) {
+            this.executable = executable;
+            Properties declared = executable.getUnderlyingCompiledStylesheet().getPrimarySerializationProperties().getProperties();
+            this.indentDeclared = declared.getProperty(OutputKeys.INDENT) != null;
+            // Including the ones the optimizer may have extracted from the templates
+            int globals = executable.getUnderlyingCompiledStylesheet().getTopLevelPackage().getGlobalSlotManager().getNumberOfVariables();
+            this.pool = globals == 0 ? new TransformerPool<>(this::createTransformer, maximumIdleTransformers) : null;
+        }
+
+        @Override
+        public Configuration getConfiguration() {
+            return executable.getProcessor().getUnderlyingConfiguration();
+        }
+
+        @Override
+        public StylesheetTransformer newTransformer() {
+            return pool == null ? new S9apiStylesheetTransformer(executable, indentDeclared, null) : pool.acquire();
+        }
+
+        @Override
+        public void dispose() {
+            if (pool != null) {
+                pool.close();
+            }
+        }
+
+        private S9apiStylesheetTransformer createTransformer() {
+            return new S9apiStylesheetTransformer(executable, indentDeclared, pool);
+        }
+    }
+
+    private static class S9apiStylesheetTransformer implements StylesheetTransformer {
+
+        private final XsltExecutable executable;
+        private final boolean indentDeclared;
+        private final TransformerPool<S9apiStylesheetTransformer> pool;
+        private final Map<QName, XdmValue> parameters = new HashMap<>();
+        private OutputOptions outputOptions = OutputOptions.DEFAULT;
+        private TraceListener traceListener;
+
+        /**
+         * Transformer kept from one transformation to the next, when there is a pool
+         */
+        private Xslt30Transformer loaded;
+
+        private S9apiStylesheetTransformer(
+            XsltExecutable executable,
+            boolean indentDeclared,
+            TransformerPool<S9apiStylesheetTransformer> pool
+        ) {
+            this.executable = executable;
+            this.indentDeclared = indentDeclared;
+            this.pool = pool;
+        }
+
+        @Override
+        public void setParameter(javax.xml.namespace.QName name, Object value) {
+            QName qName = new QName(name);
+            XsltExecutable.ParameterDetails details = executable.getGlobalParameters().get(qName);
+            if (details == null) {
+                return;
+            }
+
+            // Apply the same conversions as the JAXP API: strings are untyped, then the function conversion rules apply
+            Configuration configuration = executable.getProcessor().getUnderlyingConfiguration();
+            try {
+                GroundedValue converted = configuration
+                    .getTypeHierarchy()
+                    .applyFunctionConversionRules(
+                        toSequence(Objects.requireNonNull(value, "value")),
+                        details.getUnderlyingDeclaredType(),
+                        new RoleDiagnostic(RoleDiagnostic.VARIABLE, qName.toString(), 0),
+                        Loc.NONE
+                    );
+                parameters.put(qName, XdmValue.wrap(converted));
+            } catch (XPathException xpe) {
+                throw new IllegalArgumentException(xpe);
+            }
+        }
+
+        @Override
+        public void setOutputOptions(OutputOptions options) {
+            this.outputOptions = Objects.requireNonNull(options, "options");
+        }
+
+        @Override
+        public void setTraceListener(TraceListener listener) {
+            this.traceListener = listener;
+        }
+
+        @Override
+        public void transform(Source source, List<StylesheetTransformer> next, OutputStream output) throws TransformerException {
+            try {
+                Xslt30Transformer transformer = load();
+                if (next.isEmpty()) {
+                    transformer.transform(source, newSerializer(transformer, output));
+                    return;
+                }
+
+                // Build the chain from its end: each stage builds a tree from the result of the previous one
+                S9apiStylesheetTransformer lastStage = (S9apiStylesheetTransformer) next.get(next.size() - 1);
+                Xslt30Transformer last = lastStage.load();
+                Destination destination = last.asDocumentDestination(lastStage.newSerializer(last, output));
+                for (int i = next.size() - 2; i >= 0; i--) {
+                    destination = ((S9apiStylesheetTransformer) next.get(i)).load().asDocumentDestination(destination);
+                }
+                transformer.transform(source, destination);
+            } catch (SaxonApiException saex) {
+                throw new TransformerException(saex.getMessage(), saex);
+            }
+        }
+
+        /**
+         * The serializer starts from the <code>xsl:output</code> declaration, the options override it.
+         */
+        private Serializer newSerializer(Xslt30Transformer transformer, OutputStream output) {
+            Serializer serializer = transformer.newSerializer(output);
+            outputOptions
+                .getOutputProperties(indentDeclared)
+                .forEach((name, value) -> serializer.setOutputProperty(new QName(name), value));
+            return serializer;
+        }
+
+        @Override
+        public void release() {
+            if (pool == null) {
+                return;
+            }
+
+            if (loaded != null) {
+                // Forget the last document, which the controller would otherwise keep along with its indexes
+                Controller controller = loaded.getUnderlyingController();
+                controller.reset();
+                controller.clearGlobalContextItem();
+                controller.clearDocumentPool();
+                loaded.setTraceListener(null);
+            }
+            parameters.clear();
+            outputOptions = OutputOptions.DEFAULT;
+            traceListener = null;
+            pool.release(this);
+        }
+
+        private Xslt30Transformer load() throws SaxonApiException {
+            if (pool != null) {
+                // Without global variables or parameters, nothing is left from a previous transformation once reset
+                if (loaded == null) {
+                    loaded = executable.load30();
+                }
+                loaded.setTraceListener(traceListener);
+                return loaded;
+            }
+
+            Xslt30Transformer transformer = executable.load30();
+            if (!parameters.isEmpty()) {
+                transformer.setStylesheetParameters(parameters);
+            }
+            if (traceListener != null) {
+                transformer.setTraceListener(traceListener);
+            }
+            return transformer;
+        }
+
+        private static GroundedValue toSequence(Object value) {
+            if (value instanceof String) {
+                return StringValue.makeUntypedAtomic(StringView.tidy((String) value));
+            } else if (value instanceof BigDecimal) {
+                return new BigDecimalValue((BigDecimal) value);
+            } else if (value instanceof Boolean) {
+                return BooleanValue.get((Boolean) value);
+            } else if (value instanceof NodeInfo) {
+                return (NodeInfo) value;
+            }
+            throw new IllegalArgumentException("Unsupported XSLT parameter value: " + value.getClass().getName());
+        }
+    }
+}
@@ -17,6 +17,7 @@ package io.gravitee.policy.xslt.transformer.saxon;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.TransformerConfigurationException;
+import net.sf.saxon.Configuration;
 import net.sf.saxon.TransformerFactoryImpl;
 import net.sf.saxon.lib.FeatureKeys;
 
@@ -32,6 +33,14 @@ public class SaxonTransformerFactory extends TransformerFactoryImpl {
         enableSecureProcessing();
     }
 
+    /**
+     * @param configuration the Saxon configuration to compile the stylesheets with, the restrictions are applied to it.
+     */
+    public SaxonTransformerFactory(Configuration configuration) {
+        super(configuration);
+        enableSecureProcessing();
+    }
+
     private void enableSecureProcessing() {
         try {
             this.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import java.util.Collection;
+
+/**
+ * {@link java.io.InputStream} reading the content of gateway {@link Buffer}s from their native buffer, without copying
+ * it into an intermediate array. Reading does not consume the buffers, which can still be read afterwards.
+ *
+ * @author GraviteeSource Team
+ */
+public class BufferInputStream extends ByteBufInputStream {
+
+    public BufferInputStream(Buffer buffer) {
+        super(buffer.getNativeBuffer().duplicate());
+    }
+
+    /**
+     * Read a body received in several chunks as a whole, without aggregating them into a single buffer.
+     */
+    public BufferInputStream(Collection<Buffer> chunks) {
+        super(composite(chunks));
+    }
+
+    private static ByteBuf composite(Collection<Buffer> chunks) {
+        ByteBuf[] buffers = new ByteBuf[chunks.size()];
+        int i = 0;
+        for (Buffer chunk : chunks) {
+            buffers[i++] = chunk.getNativeBuffer().duplicate();
+        }
+        return Unpooled.wrappedBuffer(buffers);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import javax.xml.transform.stream.StreamResult;
+
+/**
+ * {@link StreamResult} writing the serialized bytes directly into a growable buffer which is then exposed as a gateway
+ * {@link Buffer} without any copy. Bytes are written in the encoding chosen by the serializer, i.e. the one declared by
+ * <code>xsl:output</code>.
+ *
+ * @author GraviteeSource Team
+ */
+public class BufferResult extends StreamResult {
+
+    private static final int MIN_INITIAL_CAPACITY = 256;
+
+    private final ByteBuf byteBuf;
+
+    public BufferResult(int expectedSize) {
+        this(Unpooled.buffer(Math.max(expectedSize, MIN_INITIAL_CAPACITY)));
+    }
+
+    private BufferResult(ByteBuf byteBuf) {
+        super(new ByteBufOutputStream(byteBuf));
+        this.byteBuf = byteBuf;
+    }
+
+    public Buffer toBuffer() {
+        return Buffer.buffer(byteBuf);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a copy of the bytes written to an output stream, as long as they do not exceed a limit.
+ *
+ * The copy is kept in buffers allocated as the bytes come, each one as large as all the previous ones together, so that
+ * the bytes are copied once, straight into the buffers they can be kept in: the captured buffers are handed over as
+ * they are, without being copied again, and can be direct buffers to be kept out of the heap.
+ *
+ * @author GraviteeSource Team
+ */
+public class CapturingOutputStream extends FilterOutputStream {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int limit;
+    private final boolean direct;
+
+    private List<ByteBuffer> captured = new ArrayList<>();
+    private ByteBuffer current;
+    private int count;
+    private long capacity;
+    private boolean overflowed;
+
+    /**
+     * @param direct whether the bytes are captured in direct buffers rather than on the heap.
+     */
+    public CapturingOutputStream(OutputStream out, int limit, boolean direct) {
+        super(out);
+        this.limit = limit;
+        this.direct = direct;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        if (ensureCapacity(1)) {
+            current.put((byte) b);
+            count++;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // Unlike FilterOutputStream, write the whole array at once instead of byte by byte
+        out.write(b, off, len);
+        if (ensureCapacity(len)) {
+            count += len;
+            while (len > 0) {
+                if (!current.hasRemaining()) {
+                    allocate(len);
+                }
+                int length = Math.min(len, current.remaining());
+                current.put(b, off, length);
+                off += length;
+                len -= length;
+            }
+        }
+    }
+
+    /**
+     * @return whether all the bytes written so far have been captured.
+     */
+    public boolean isComplete() {
+        return !overflowed;
+    }
+
+    /**
+     * To be called once nothing is written anymore, the buffers being handed over.
+     *
+     * @return the buffers holding the captured bytes in order, ready to be read.
+     */
+    public List<ByteBuffer> getCaptured() {
+        captured.forEach(ByteBuffer::flip);
+        return captured;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    private boolean ensureCapacity(int length) {
+        if (overflowed) {
+            return false;
+        }
+        if (length > limit - count) {
+            // Too large to be kept, stop copying
+            overflowed = true;
+            captured = null;
+            current = null;
+            return false;
+        }
+        if (current == null || (!current.hasRemaining() && length > 0)) {
+            allocate(length);
+        }
+        return true;
+    }
+
+    /**
+     * Add a buffer at least large enough for <code>length</code> more bytes, or for what remains before the limit.
+     */
+    private void allocate(int length) {
+        int size = (int) Math.min(limit - capacity, Math.max(Math.max(length, INITIAL_CAPACITY), capacity));
+        current = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        captured.add(current);
+        capacity += size;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import io.gravitee.common.http.HttpStatusCode;
+
+/**
+ * Thrown as soon as a source document crosses one of its {@link DocumentLimits}.
+ *
+ * The XSLT processor does not let an unchecked exception thrown by the parser go through, so it is reported as the
+ * cause of a checked exception: a {@link org.xml.sax.SAXException} from the parsing events, an
+ * {@link java.io.IOException} from the input. Use {@link #find(Throwable)} to get it back.
+ *
+ * @author GraviteeSource Team
+ */
+public class DocumentLimitException extends RuntimeException {
+
+    public enum Limit {
+        BYTES("size in bytes", HttpStatusCode.REQUEST_ENTITY_TOO_LARGE_413),
+        DEPTH("element depth", HttpStatusCode.BAD_REQUEST_400),
+        ATTRIBUTES("number of attributes per element", HttpStatusCode.BAD_REQUEST_400),
+        NODES("number of nodes", HttpStatusCode.REQUEST_ENTITY_TOO_LARGE_413);
+
+        private final String description;
+        private final int statusCode;
+
+        Limit(String description, int statusCode) {
+            this.description = description;
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    private final Limit limit;
+
+    public DocumentLimitException(Limit limit, long maximum) {
+        super("Source document exceeds the maximum " + limit.description + " (" + maximum + ")");
+        this.limit = limit;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    public int getStatusCode() {
+        return limit.getStatusCode();
+    }
+
+    /**
+     * @return the first {@link DocumentLimitException} of the causes of the given exception, the exception included, or
+     * <code>null</code> if there is none.
+     */
+    public static DocumentLimitException find(Throwable throwable) {
+        Throwable current = throwable;
+        // Bounded, in case of a cycle in the causes
+        for (int i = 0; current != null && i < 32; i++) {
+            if (current instanceof DocumentLimitException) {
+                return (DocumentLimitException) current;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+}
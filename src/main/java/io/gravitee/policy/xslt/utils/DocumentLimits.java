@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+/**
+ * Immutable limits checked while a source document is read, so that an oversized or abusive document is rejected as
+ * soon as it crosses one of them, before it is fully parsed and held in memory.
+ *
+ * A limit of <code>0</code> or less means unlimited.
+ *
+ * @author GraviteeSource Team
+ */
+public final class DocumentLimits {
+
+    public static final DocumentLimits NONE = builder().build();
+
+    private final long maxBytes;
+
+    private final int maxDepth;
+
+    private final int maxAttributes;
+
+    private final long maxNodes;
+
+    private DocumentLimits(Builder builder) {
+        this.maxBytes = builder.maxBytes;
+        this.maxDepth = builder.maxDepth;
+        this.maxAttributes = builder.maxAttributes;
+        this.maxNodes = builder.maxNodes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the maximum number of bytes of the document.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the maximum nesting depth of elements, the root element being at depth 1.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return the maximum number of attributes of a single element, namespace declarations excluded.
+     */
+    public int getMaxAttributes() {
+        return maxAttributes;
+    }
+
+    /**
+     * @return the maximum number of elements, attributes, text nodes and processing instructions of the document.
+     */
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    public boolean hasByteLimit() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return <code>true</code> if a limit must be checked on the parsing events.
+     */
+    public boolean hasStructureLimits() {
+        return maxDepth > 0 || maxAttributes > 0 || maxNodes > 0;
+    }
+
+    @Override
+    public String toString() {
+        return (
+            "DocumentLimits{" +
+            "maxBytes=" +
+            maxBytes +
+            ", maxDepth=" +
+            maxDepth +
+            ", maxAttributes=" +
+            maxAttributes +
+            ", maxNodes=" +
+            maxNodes +
+            '}'
+        );
+    }
+
+    public static final class Builder {
+
+        private long maxBytes;
+
+        private int maxDepth;
+
+        private int maxAttributes;
+
+        private long maxNodes;
+
+        private Builder() {}
+
+        public Builder maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public Builder maxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        public Builder maxAttributes(int maxAttributes) {
+            this.maxAttributes = maxAttributes;
+            return this;
+        }
+
+        public Builder maxNodes(long maxNodes) {
+            this.maxNodes = maxNodes;
+            return this;
+        }
+
+        public DocumentLimits build() {
+            return new DocumentLimits(this);
+        }
+    }
+}
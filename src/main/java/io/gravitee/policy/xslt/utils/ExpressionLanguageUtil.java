@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import java.util.regex.Pattern;
+
+/**
+ * @author GraviteeSource Team
+ */
+public final class ExpressionLanguageUtil {
+
+    /**
+     * Start of a template expression as understood by the Gravitee template engine: <code>{#...}</code>, and the
+     * shorthands <code>{T(...)}</code> and <code>{(...)}</code> which are rewritten to <code>{#...}</code> before
+     * evaluation. It may also match an XSLT attribute value template, in which case the text is just considered as
+     * dynamic.
+     */
+    private static final Pattern EXPRESSION_START = Pattern.compile("\\{ *[#T(]");
+
+    private ExpressionLanguageUtil() {}
+
+    /**
+     * @return <code>true</code> if the text may contain an expression and must go through the template engine,
+     * <code>false</code> if the template engine would return it unchanged.
+     */
+    public static boolean containsExpression(String text) {
+        return text != null && EXPRESSION_START.matcher(text).find();
+    }
+}
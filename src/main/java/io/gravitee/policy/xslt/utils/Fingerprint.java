@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * 128-bit fingerprint of a text, computed with MurmurHash3 (x64 variant) over its UTF-8 encoding.
+ *
+ * This is not a cryptographic hash: two different texts may have the same fingerprint, so a fingerprint must only be
+ * used to find candidates, which are then compared with the text itself.
+ *
+ * The text is encoded and hashed on the fly in a buffer owned by the calling thread, so computing a fingerprint does
+ * not allocate anything but the fingerprint itself.
+ *
+ * @author GraviteeSource Team
+ */
+public final class Fingerprint {
+
+    private static final ThreadLocal<Hasher> HASHERS = ThreadLocal.withInitial(Hasher::new);
+
+    private final long high;
+    private final long low;
+
+    private String hex;
+
+    private Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static Fingerprint of(String text) {
+        return HASHERS.get().hash(text);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Fingerprint that = (Fingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        // Bits are already evenly distributed
+        return (int) high;
+    }
+
+    /**
+     * @return the fingerprint as 32 hexadecimal characters.
+     */
+    @Override
+    public String toString() {
+        String hex = this.hex;
+        if (hex == null) {
+            hex = toHex(high) + toHex(low);
+            this.hex = hex;
+        }
+        return hex;
+    }
+
+    private static String toHex(long value) {
+        String hex = Long.toHexString(value);
+        return hex.length() == 16 ? hex : "0".repeat(16 - hex.length()) + hex;
+    }
+
+    /**
+     * Streaming MurmurHash3 x64 128-bit with a zero seed, fed with the UTF-8 encoding of a text.
+     */
+    private static final class Hasher {
+
+        private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private static final int BLOCK_SIZE = 16;
+
+        /**
+         * Always a multiple of the block size, with room for the longest UTF-8 sequence
+         */
+        private final byte[] buffer = new byte[8192];
+
+        private long h1;
+        private long h2;
+        private long length;
+
+        private Fingerprint hash(String text) {
+            h1 = 0;
+            h2 = 0;
+            length = 0;
+
+            int position = 0;
+            int end = text.length();
+            for (int i = 0; i < end; i++) {
+                if (position > buffer.length - 4) {
+                    position = flush(position);
+                }
+
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xc0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+                        buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                        i++;
+                    } else {
+                        // Same replacement as String#getBytes for a malformed surrogate
+                        buffer[position++] = '?';
+                    }
+                } else {
+                    buffer[position++] = (byte) (0xe0 | (c >> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+
+            int blocksEnd = position - position % BLOCK_SIZE;
+            processBlocks(blocksEnd);
+            processTail(blocksEnd, position - blocksEnd);
+            return finish();
+        }
+
+        /**
+         * Hash all the complete blocks of the buffer and move the remaining bytes to its beginning.
+         *
+         * @return the number of bytes left in the buffer.
+         */
+        private int flush(int position) {
+            int blocksEnd = position - position % BLOCK_SIZE;
+            processBlocks(blocksEnd);
+            int remaining = position - blocksEnd;
+            System.arraycopy(buffer, blocksEnd, buffer, 0, remaining);
+            return remaining;
+        }
+
+        private void processBlocks(int end) {
+            long h1 = this.h1;
+            long h2 = this.h2;
+            for (int offset = 0; offset < end; offset += BLOCK_SIZE) {
+                long k1 = (long) LONG_LE.get(buffer, offset);
+                long k2 = (long) LONG_LE.get(buffer, offset + 8);
+
+                h1 ^= mixK1(k1);
+                h1 = Long.rotateLeft(h1, 27);
+                h1 += h2;
+                h1 = h1 * 5 + 0x52dce729;
+
+                h2 ^= mixK2(k2);
+                h2 = Long.rotateLeft(h2, 31);
+                h2 += h1;
+                h2 = h2 * 5 + 0x38495ab5;
+            }
+            this.h1 = h1;
+            this.h2 = h2;
+            this.length += end;
+        }
+
+        private void processTail(int offset, int remaining) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = remaining - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (buffer[offset + i] & 0xffL);
+            }
+            for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (buffer[offset + i] & 0xffL);
+            }
+
+            if (remaining > 8) {
+                h2 ^= mixK2(k2);
+            }
+            if (remaining > 0) {
+                h1 ^= mixK1(k1);
+            }
+            length += remaining;
+        }
+
+        private Fingerprint finish() {
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            return new Fingerprint(h1, h2);
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            return k1 * C2;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            return k2 * C1;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
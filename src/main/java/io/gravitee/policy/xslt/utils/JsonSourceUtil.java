@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import io.gravitee.common.http.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import net.sf.saxon.Configuration;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathExecutable;
+import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmAtomicValue;
+import net.sf.saxon.s9api.XdmNode;
+
+/**
+ * Build the document to transform from a JSON body, as the XML representation defined by the XPath 3.1
+ * <code>fn:json-to-xml</code> function: the document is built directly in memory, there is no intermediate XML text
+ * to parse.
+ *
+ * @author GraviteeSource Team
+ */
+public final class JsonSourceUtil {
+
+    private static final QName JSON = new QName("json");
+
+    private static final int DECODING_BUFFER_SIZE = 8192;
+
+    private static volatile JsonToXml jsonToXml;
+
+    private JsonSourceUtil() {}
+
+    /**
+     * @param input the JSON text.
+     * @param contentType the content type of the message, whose charset is used to decode the text, UTF-8 if it does not
+     * declare any.
+     * @param configuration the configuration of the stylesheet which transforms the document.
+     */
+    public static NodeInfo createJsonSource(InputStream input, String contentType, Configuration configuration)
+        throws IOException, SaxonApiException {
+        String json = read(input, getCharset(contentType));
+
+        XPathSelector selector = getJsonToXml(configuration).load();
+        selector.setVariable(JSON, new XdmAtomicValue(json));
+        return ((XdmNode) selector.evaluateSingle()).getUnderlyingNode();
+    }
+
+    static Charset getCharset(String contentType) {
+        MediaType mediaType = contentType == null ? null : MediaType.parseMediaType(contentType);
+        Charset charset = mediaType == null ? null : mediaType.getCharset();
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
+
+    /**
+     * Decode the text while reading it, without copying the encoded bytes first.
+     */
+    private static String read(InputStream input, Charset charset) throws IOException {
+        // There are never more characters than bytes, so the builder does not have to grow
+        StringBuilder text = new StringBuilder(Math.max(input.available(), DECODING_BUFFER_SIZE));
+        Reader reader = new InputStreamReader(input, charset);
+        char[] buffer = new char[DECODING_BUFFER_SIZE];
+        int read = reader.read(buffer);
+        // Unlike XML parsers, json-to-xml does not accept a byte order mark
+        int start = read > 0 && buffer[0] == '\uFEFF' ? 1 : 0;
+        while (read != -1) {
+            text.append(buffer, start, read - start);
+            start = 0;
+            read = reader.read(buffer);
+        }
+        return text.toString();
+    }
+
+    private static XPathExecutable getJsonToXml(Configuration configuration) throws SaxonApiException {
+        JsonToXml current = jsonToXml;
+        if (current == null || current.configuration != configuration) {
+            XPathCompiler compiler = new Processor(configuration).newXPathCompiler();
+            compiler.declareVariable(JSON);
+            current = new JsonToXml(configuration, compiler.compile("json-to-xml($json)"));
+            jsonToXml = current;
+        }
+        return current.executable;
+    }
+
+    private static final class JsonToXml {
+
+        private final Configuration configuration;
+        private final XPathExecutable executable;
+
+        private JsonToXml(Configuration configuration, XPathExecutable executable) {
+            this.configuration = configuration;
+            this.executable = executable;
+        }
+    }
+}
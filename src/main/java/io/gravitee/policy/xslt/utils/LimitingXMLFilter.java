@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * SAX filter checking the structure limits of a document on each event, so that the parsing is aborted with a
+ * {@link DocumentLimitException} as soon as one of them is crossed, embedded in a {@link SAXException}.
+ *
+ * Counted nodes are elements, attributes, text nodes (a run of characters between two markups counts once) and
+ * processing instructions. Comments are not seen by content handlers and are not counted.
+ *
+ * @author GraviteeSource Team
+ */
+class LimitingXMLFilter extends XMLFilterImpl {
+
+    private final int maxDepth;
+    private final int maxAttributes;
+    private final long maxNodes;
+
+    private int depth;
+    private long nodes;
+    private boolean inText;
+
+    LimitingXMLFilter(XMLReader parent, DocumentLimits limits) {
+        super(parent);
+        this.maxDepth = limits.getMaxDepth();
+        this.maxAttributes = limits.getMaxAttributes();
+        this.maxNodes = limits.getMaxNodes();
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        depth = 0;
+        nodes = 0;
+        inText = false;
+        super.startDocument();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        inText = false;
+
+        depth++;
+        if (maxDepth > 0 && depth > maxDepth) {
+            throw limitExceeded(DocumentLimitException.Limit.DEPTH, maxDepth);
+        }
+
+        int attributes = atts.getLength();
+        if (maxAttributes > 0 && attributes > maxAttributes) {
+            throw limitExceeded(DocumentLimitException.Limit.ATTRIBUTES, maxAttributes);
+        }
+
+        countNodes(1 + attributes);
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        inText = false;
+        depth--;
+        super.endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        countText();
+        super.characters(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        countText();
+        super.ignorableWhitespace(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException {
+        inText = false;
+        countNodes(1);
+        super.processingInstruction(target, data);
+    }
+
+    private void countText() throws SAXException {
+        if (!inText) {
+            inText = true;
+            countNodes(1);
+        }
+    }
+
+    private void countNodes(int count) throws SAXException {
+        nodes += count;
+        if (maxNodes > 0 && nodes > maxNodes) {
+            throw limitExceeded(DocumentLimitException.Limit.NODES, maxNodes);
+        }
+    }
+
+    /**
+     * Saxon rethrows the exception embedded in a {@link SAXException} as is.
+     */
+    private static SAXException limitExceeded(DocumentLimitException.Limit limit, long maximum) {
+        return new SAXException(new DocumentLimitException(limit, maximum));
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Read the name of the root element of a document without consuming it.
+ *
+ * Only the prolog and the root start tag are read, with a pull parser which neither loads DTDs nor resolves entities,
+ * then the stream is reset so that the document can be parsed as usual.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RootElementSniffer {
+
+    /**
+     * Maximum number of bytes read to find the root element
+     */
+    public static final int PEEK_LIMIT = 64 * 1024;
+
+    /**
+     * Factories are not guaranteed to be thread-safe, keep one per thread as for the SAX parsers
+     */
+    private static final ThreadLocal<XMLInputFactory> FACTORIES = ThreadLocal.withInitial(RootElementSniffer::createFactory);
+
+    private RootElementSniffer() {}
+
+    /**
+     * @param input a stream supporting {@link InputStream#mark(int)}, positioned at the beginning of the document.
+     * @return the name of the root element, or <code>null</code> if it is not found within the first
+     * {@link #PEEK_LIMIT} bytes or if the prolog is malformed.
+     */
+    public static QName peek(InputStream input) throws IOException {
+        input.mark(PEEK_LIMIT);
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORIES.get().createXMLStreamReader(new LimitedInputStream(input, PEEK_LIMIT));
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return reader.getName();
+                }
+            }
+            return null;
+        } catch (XMLStreamException ex) {
+            // Malformed documents are reported by the transformation itself
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {}
+            }
+            input.reset();
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Stop reading before the mark is invalidated, and never close the underlying stream.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private int remaining;
+
+        private LimitedInputStream(InputStream in, int limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -16,7 +16,6 @@
 package io.gravitee.policy.xslt.utils;
 
 import io.gravitee.gateway.api.buffer.Buffer;
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
@@ -28,16 +27,40 @@ import org.xml.sax.XMLReader;
 
 public class SAXSourceUtil {
 
+    private static final XMLReaderPool SECURE_XML_READERS = new XMLReaderPool(createSecureSAXParserFactory());
+    private static final XMLReaderPool UNSECURE_XML_READERS = new XMLReaderPool(createUnsecureSAXParserFactory());
+
     private SAXSourceUtil() {}
 
     public static SAXSource createSAXSource(Buffer input, boolean secureProcessing) throws ParserConfigurationException, SAXException {
-        XMLReader xmlReader = secureProcessing ? createSecureXMLReader() : createUnsecureXMLReader();
-        InputStream xslInputStream = new ByteArrayInputStream(input.getBytes());
-        return new SAXSource(xmlReader, new InputSource(xslInputStream));
+        return createSAXSource(new BufferInputStream(input), secureProcessing);
+    }
+
+    public static SAXSource createSAXSource(InputStream input, boolean secureProcessing) throws ParserConfigurationException, SAXException {
+        return createSAXSource(new InputSource(input), secureProcessing);
+    }
+
+    public static SAXSource createSAXSource(InputSource input, boolean secureProcessing) throws ParserConfigurationException, SAXException {
+        XMLReader xmlReader = secureProcessing ? SECURE_XML_READERS.acquire() : UNSECURE_XML_READERS.acquire();
+        return new SAXSource(xmlReader, input);
+    }
+
+    /**
+     * Create a source whose parsing fails with a {@link DocumentLimitException} as soon as the document crosses one of
+     * the structure limits. The size limit is not checked here, the input can be wrapped in a
+     * {@link SizeLimitingInputStream} for that.
+     */
+    public static SAXSource createSAXSource(InputStream input, boolean secureProcessing, DocumentLimits limits)
+        throws ParserConfigurationException, SAXException {
+        SAXSource source = createSAXSource(input, secureProcessing);
+        if (limits.hasStructureLimits()) {
+            source.setXMLReader(new LimitingXMLFilter(source.getXMLReader(), limits));
+        }
+        return source;
     }
 
     /**
-     * Create a SAXSource from a Buffer using a SAXParserFactory with a secure configuration, based on best practices explained on:
+     * Create a SAXParserFactory with a secure configuration, based on best practices explained on:
      * <ul>
      *   <li>
      *     <a href="https://cheatsheetseries.owasp.org/cheatsheets/XML_External_Entity_Prevention_Cheat_Sheet.html#jaxp-documentbuilderfactory-saxparserfactory-and-dom4j">OWASP Website</a>
@@ -48,13 +71,22 @@ public class SAXSourceUtil {
      * </ul>
      * For instance, DTDs and external entities are disabled.
      *
-     * @throws ParserConfigurationException if a parser cannot be created which satisfies the requested configuration.
-     * @throws SAXException for SAX errors.
+     * @throws IllegalStateException if the factory does not support the secure configuration.
      */
-    private static XMLReader createSecureXMLReader() throws ParserConfigurationException, SAXException {
+    private static SAXParserFactory createSecureSAXParserFactory() {
         SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
         saxParserFactory.setNamespaceAware(true);
 
+        try {
+            configureSecureProcessing(saxParserFactory);
+        } catch (ParserConfigurationException | SAXException ex) {
+            throw new IllegalStateException("Unable to configure a secure SAX parser factory", ex);
+        }
+
+        return saxParserFactory;
+    }
+
+    private static void configureSecureProcessing(SAXParserFactory saxParserFactory) throws ParserConfigurationException, SAXException {
         // This is the PRIMARY defense. If DTDs (doctypes) are disallowed, almost all XML entity attacks are prevented
         // Xerces 2 only - http://xerces.apache.org/xerces2-j/features.html#disallow-doctype-decl
         saxParserFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
@@ -82,19 +114,14 @@ public class SAXSourceUtil {
         // and these as well, per Timothy Morgan's 2014 paper: "XML Schema, DTD, and Entity Attacks"
         // https://research.nccgroup.com/2014/05/19/xml-schema-dtd-and-entity-attacks-a-compendium-of-known-techniques/
         saxParserFactory.setXIncludeAware(false);
-
-        return saxParserFactory.newSAXParser().getXMLReader();
     }
 
     /**
-     * Create a SAXSource from a Buffer using a SAXParserFactory with default configuration.
-     *
-     * @throws ParserConfigurationException if a parser cannot be created which satisfies the requested configuration.
-     * @throws SAXException for SAX errors.
+     * Create a SAXParserFactory with default configuration.
      */
-    private static XMLReader createUnsecureXMLReader() throws ParserConfigurationException, SAXException {
+    private static SAXParserFactory createUnsecureSAXParserFactory() {
         SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
         saxParserFactory.setNamespaceAware(true);
-        return saxParserFactory.newSAXParser().getXMLReader();
+        return saxParserFactory;
     }
 }
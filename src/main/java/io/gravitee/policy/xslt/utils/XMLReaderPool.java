@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Per-thread pool of parsers created from a single, already configured, {@link SAXParserFactory}.
+ *
+ * A parser is borrowed when a reader is acquired and goes back to the pool of the current thread once the reader has
+ * parsed a document. It is reset before being reused, which restores the features configured on the factory and drops
+ * the handlers installed by the previous caller. A reader which is never used to parse is simply not returned.
+ *
+ * @author GraviteeSource Team
+ */
+final class XMLReaderPool {
+
+    private static final int MAX_IDLE_PARSERS_PER_THREAD = 2;
+
+    private final SAXParserFactory factory;
+
+    private final ThreadLocal<Deque<SAXParser>> idleParsers = ThreadLocal.withInitial(ArrayDeque::new);
+
+    XMLReaderPool(SAXParserFactory factory) {
+        this.factory = factory;
+    }
+
+    XMLReader acquire() throws ParserConfigurationException, SAXException {
+        SAXParser parser = idleParsers.get().poll();
+        if (parser == null) {
+            // JAXP factories are not guaranteed to be thread-safe, even once configured
+            synchronized (factory) {
+                parser = factory.newSAXParser();
+            }
+        }
+        return new PooledXMLReader(parser);
+    }
+
+    private void release(SAXParser parser) {
+        try {
+            parser.reset();
+        } catch (UnsupportedOperationException uoe) {
+            // This parser can not be safely reused
+            return;
+        }
+
+        Deque<SAXParser> parsers = idleParsers.get();
+        if (parsers.size() < MAX_IDLE_PARSERS_PER_THREAD) {
+            parsers.push(parser);
+        }
+    }
+
+    private final class PooledXMLReader implements XMLReader {
+
+        private final SAXParser parser;
+        private final XMLReader reader;
+        private boolean released;
+
+        private PooledXMLReader(SAXParser parser) throws SAXException {
+            this.parser = parser;
+            this.reader = parser.getXMLReader();
+        }
+
+        @Override
+        public void parse(InputSource input) throws IOException, SAXException {
+            try {
+                reader.parse(input);
+            } finally {
+                releaseOnce();
+            }
+        }
+
+        @Override
+        public void parse(String systemId) throws IOException, SAXException {
+            try {
+                reader.parse(systemId);
+            } finally {
+                releaseOnce();
+            }
+        }
+
+        private void releaseOnce() {
+            if (!released) {
+                released = true;
+                release(parser);
+            }
+        }
+
+        @Override
+        public boolean getFeature(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+            return reader.getFeature(name);
+        }
+
+        @Override
+        public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+            reader.setFeature(name, value);
+        }
+
+        @Override
+        public Object getProperty(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+            return reader.getProperty(name);
+        }
+
+        @Override
+        public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+            reader.setProperty(name, value);
+        }
+
+        @Override
+        public void setEntityResolver(EntityResolver resolver) {
+            reader.setEntityResolver(resolver);
+        }
+
+        @Override
+        public EntityResolver getEntityResolver() {
+            return reader.getEntityResolver();
+        }
+
+        @Override
+        public void setDTDHandler(DTDHandler handler) {
+            reader.setDTDHandler(handler);
+        }
+
+        @Override
+        public DTDHandler getDTDHandler() {
+            return reader.getDTDHandler();
+        }
+
+        @Override
+        public void setContentHandler(ContentHandler handler) {
+            reader.setContentHandler(handler);
+        }
+
+        @Override
+        public ContentHandler getContentHandler() {
+            return reader.getContentHandler();
+        }
+
+        @Override
+        public void setErrorHandler(ErrorHandler handler) {
+            reader.setErrorHandler(handler);
+        }
+
+        @Override
+        public ErrorHandler getErrorHandler() {
+            return reader.getErrorHandler();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.netty.buffer.ByteBuf;
+import java.util.Locale;
+
+/**
+ * Cheap checks telling whether a message can not be an XML document, so that it is not even parsed.
+ *
+ * These checks never reject a well-formed document: when in doubt, the message is considered as XML and the parser
+ * has the final word.
+ *
+ * @author GraviteeSource Team
+ */
+public final class XmlSniffer {
+
+    public enum Result {
+        XML,
+        NOT_XML,
+        /**
+         * Only blanks or a byte order mark have been read so far
+         */
+        UNKNOWN,
+    }
+
+    private XmlSniffer() {}
+
+    /**
+     * @return <code>false</code> if the headers announce an empty body or a media type other than XML,
+     * <code>true</code> otherwise, including when there is no <code>Content-Type</code>.
+     */
+    public static boolean mayBeXml(HttpHeaders headers) {
+        if (headers == null) {
+            return true;
+        }
+
+        String contentLength = headers.get(HttpHeaderNames.CONTENT_LENGTH);
+        if (contentLength != null && "0".equals(contentLength.trim())) {
+            return false;
+        }
+
+        String contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+        return contentType == null || contentType.isBlank() || isXmlMediaType(contentType);
+    }
+
+    /**
+     * @return <code>true</code> for <code>application/xml</code>, <code>text/xml</code> and the <code>+xml</code>
+     * media types, whatever their parameters.
+     */
+    public static boolean isXmlMediaType(String contentType) {
+        int parameters = contentType.indexOf(';');
+        String mediaType = (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim().toLowerCase(Locale.ROOT);
+        return mediaType.endsWith("/xml") || mediaType.endsWith("+xml");
+    }
+
+    /**
+     * Look at the first significant byte of the body.
+     *
+     * @param chunk the next chunk of a body for which {@link Result#UNKNOWN} has been returned so far.
+     */
+    public static Result sniff(Buffer chunk) {
+        ByteBuf buffer = chunk.getNativeBuffer();
+        for (int i = buffer.readerIndex(); i < buffer.writerIndex(); i++) {
+            switch (buffer.getByte(i)) {
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n':
+                // UTF-8 byte order mark
+                case (byte) 0xEF:
+                case (byte) 0xBB:
+                case (byte) 0xBF:
+                    continue;
+                case '<':
+                // UTF-16 byte order marks, or a multi-byte encoding without byte order mark
+                case (byte) 0xFE:
+                case (byte) 0xFF:
+                case 0x00:
+                    return Result.XML;
+                default:
+                    return Result.NOT_XML;
+            }
+        }
+        return Result.UNKNOWN;
+    }
+}
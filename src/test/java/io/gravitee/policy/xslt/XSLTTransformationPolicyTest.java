@@ -17,27 +17,56 @@ package io.gravitee.policy.xslt;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import io.gravitee.common.http.HttpStatusCode;
+import io.gravitee.common.http.MediaType;
 import io.gravitee.el.TemplateEngine;
 import io.gravitee.el.spel.SpelTemplateEngine;
 import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
 import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
 import io.gravitee.gateway.api.stream.exception.TransformationException;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.api.PolicyResult;
+import io.gravitee.policy.xslt.configuration.InputFormat;
+import io.gravitee.policy.xslt.configuration.XSLTOutput;
 import io.gravitee.policy.xslt.configuration.XSLTParameter;
+import io.gravitee.policy.xslt.configuration.XSLTParameterType;
+import io.gravitee.policy.xslt.configuration.XSLTRoute;
 import io.gravitee.policy.xslt.configuration.XSLTTransformationPolicyConfiguration;
+import io.gravitee.policy.xslt.metrics.StylesheetMetrics;
+import io.gravitee.policy.xslt.metrics.TransformationMetrics;
+import io.gravitee.policy.xslt.metrics.TransformationTrace;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.TransformerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.env.Environment;
@@ -61,16 +90,26 @@ class XSLTTransformationPolicyTest {
 
     private TemplateEngine templateEngine;
 
-    private final MockEnvironment environment = new MockEnvironment();
+    private final Map<String, String> gatewayProperties = new HashMap<>();
+
+    private MockEnvironment environment = new MockEnvironment();
+
+    private final HttpHeaders messageHeaders = HttpHeaders.create();
 
     @BeforeEach
     public void init() {
         xsltTransformationPolicyConfiguration = new XSLTTransformationPolicyConfiguration();
         xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
         templateEngine = mock(SpelTemplateEngine.class);
-        when(templateEngine.convert(any())).thenAnswer(returnsFirstArg());
-        when(executionContext.getTemplateEngine()).thenReturn(templateEngine);
-        when(executionContext.getComponent(Environment.class)).thenReturn(environment);
+        lenient().when(templateEngine.convert(any())).thenAnswer(returnsFirstArg());
+        lenient().when(executionContext.getTemplateEngine()).thenReturn(templateEngine);
+        lenient().when(executionContext.getComponent(Environment.class)).thenReturn(environment);
+        Request request = mock(Request.class);
+        lenient().when(request.headers()).thenReturn(messageHeaders);
+        lenient().when(executionContext.request()).thenReturn(request);
+        Response response = mock(Response.class);
+        lenient().when(response.headers()).thenReturn(messageHeaders);
+        lenient().when(executionContext.response()).thenReturn(response);
     }
 
     @Test
@@ -81,6 +120,7 @@ class XSLTTransformationPolicyTest {
         String expected = loadResource("/io/gravitee/policy/xslt/output01.xml");
 
         xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
 
         Buffer ret = xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
         assertThat(ret).isNotNull();
@@ -89,6 +129,45 @@ class XSLTTransformationPolicyTest {
         assertThat(diff.hasDifferences()).withFailMessage("XML identical %s", diff.toString()).isFalse();
     }
 
+    @Test
+    @DisplayName("Should write output in the encoding declared by the stylesheet")
+    void shouldWriteOutputInDeclaredEncoding() throws Exception {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet05.xsl");
+        String xml = loadResource("/io/gravitee/policy/xslt/file03.xml");
+
+        xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+
+        Buffer ret = xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+
+        assertThat(ret.getBytes()).isEqualTo("<test>d\u00e9j\u00e0</test>".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    @DisplayName("Should record transformation metrics")
+    void shouldRecordTransformationMetrics() throws Exception {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet01.xsl");
+        String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
+
+        xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+
+        Function<Buffer, Buffer> transformation = xsltTransformationPolicy.toXSLT(executionContext);
+        transformation.apply(Buffer.buffer(xml));
+        Buffer ret = transformation.apply(Buffer.buffer(xml));
+
+        ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+        verify(executionContext, times(2)).setAttribute(eq(TransformationTrace.ATTR_STYLESHEET), fingerprint.capture());
+        verify(executionContext, atLeastOnce()).setAttribute(TransformationTrace.ATTR_CACHE, "hit");
+        verify(executionContext, times(2)).setAttribute(TransformationTrace.ATTR_INPUT_BYTES, (long) Buffer.buffer(xml).length());
+        verify(executionContext, times(2)).setAttribute(TransformationTrace.ATTR_OUTPUT_BYTES, (long) ret.length());
+
+        StylesheetMetrics metrics = TransformationMetrics.getInstance().getStylesheetMetrics(fingerprint.getValue());
+        assertThat(metrics.getTransformations().count()).isGreaterThanOrEqualTo(2);
+        assertThat(metrics.getCacheHits().count()).isGreaterThanOrEqualTo(1);
+        assertThat(metrics.getOutputBytes().count()).isGreaterThanOrEqualTo(2L * ret.length());
+    }
+
     @Test
     @DisplayName("Should throw exception when stylesheet is invalid")
     void shouldThrowExceptionForInvalidStylesheet() throws Exception {
@@ -96,6 +175,7 @@ class XSLTTransformationPolicyTest {
         String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
 
         xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
 
         Assertions.assertThrows(
             TransformationException.class,
@@ -103,6 +183,30 @@ class XSLTTransformationPolicyTest {
         );
     }
 
+    @Test
+    @DisplayName("Should not compile again a stylesheet which failed to precompile")
+    void shouldNotCompileAgainInvalidPrecompiledStylesheet() throws Exception {
+        String stylesheet =
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:template match=\"/\"><xsl:unknown/></xsl:template>" +
+            "</xsl:stylesheet>";
+        String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
+
+        // Precompiled as soon as the policy is built, whether a message already went through a policy or not
+        xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+        CompletableFuture<Void> precompilation = TransformerFactory
+            .getInstance()
+            .precompile(stylesheet, CompilationOptions.DEFAULT);
+        Throwable precompilationFailure = assertThrows(ExecutionException.class, () -> precompilation.get(5, TimeUnit.SECONDS)).getCause();
+
+        TransformationException failure = assertThrows(
+            TransformationException.class,
+            () -> xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml))
+        );
+        assertThat(failure).hasCauseReference(precompilationFailure);
+    }
+
     @Test
     @DisplayName("Should throw exception when external entity injection")
     public void shouldThrowExceptionForExternalEntityInjection() throws Exception {
@@ -110,6 +214,7 @@ class XSLTTransformationPolicyTest {
         String xml = loadResource("/io/gravitee/policy/xslt/file02.xml");
 
         xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
 
         Assertions.assertThrows(
             TransformationException.class,
@@ -128,6 +233,7 @@ class XSLTTransformationPolicyTest {
         parameter.setValue("{#request.headers['test'][0]}");
         xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
         xsltTransformationPolicyConfiguration.setParameters(singletonList(parameter));
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
 
         when(templateEngine.getValue("{#request.headers['test'][0]}", String.class)).thenReturn("1");
 
@@ -137,6 +243,80 @@ class XSLTTransformationPolicyTest {
         verify(templateEngine, times(2)).getValue(argThat(value -> value.equals("{#request.headers['test'][0]}")), eq(String.class));
     }
 
+    @Test
+    @DisplayName("Should not evaluate stylesheet without expression")
+    void shouldNotEvaluateStaticStylesheet() throws IOException {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet01.xsl");
+        String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
+
+        xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+
+        xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+        xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+
+        verify(templateEngine, never()).convert(any());
+    }
+
+    @Test
+    @DisplayName("Should evaluate stylesheet with expression for each message")
+    void shouldEvaluateDynamicStylesheet() throws IOException {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet04.xsl");
+        String xml = loadResource("/io/gravitee/policy/xslt/file03.xml");
+
+        xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+        when(templateEngine.convert(stylesheet)).thenReturn(stylesheet.replace("{#request.headers['test'][0]}", "1"));
+
+        Buffer ret = xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+        xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+
+        assertThat(ret.toString()).contains("<test>1</test>");
+        verify(templateEngine, times(2)).convert(stylesheet);
+    }
+
+    @Test
+    @DisplayName("Should pass typed parameters without evaluating constant values")
+    void shouldPassTypedParameters() throws IOException {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet06.xsl");
+        String xml = loadResource("/io/gravitee/policy/xslt/file03.xml");
+
+        xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicyConfiguration.setParameters(
+            List.of(
+                parameter("number", "41", XSLTParameterType.NUMBER),
+                parameter("flag", "false", XSLTParameterType.BOOLEAN),
+                parameter("{urn:test}document", "<items><item>a</item><item>b</item></items>", XSLTParameterType.XML),
+                parameter("text", "{#request.headers['test'][0]}", XSLTParameterType.STRING)
+            )
+        );
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+        when(templateEngine.getValue("{#request.headers['test'][0]}", String.class)).thenReturn("evaluated");
+
+        Buffer ret = xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+        xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+
+        Diff diff = DiffBuilder
+            .compare("<result><number>42</number><flag>true</flag><item>b</item><text>evaluated</text></result>")
+            .ignoreWhitespace()
+            .withTest(ret.toString())
+            .checkForIdentical()
+            .build();
+        assertThat(diff.hasDifferences()).withFailMessage("XML identical %s", diff.toString()).isFalse();
+        verify(templateEngine, times(2)).getValue(anyString(), eq(String.class));
+    }
+
+    @Test
+    @DisplayName("Should reject constant parameter not matching its type")
+    void shouldRejectInvalidConstantParameter() {
+        xsltTransformationPolicyConfiguration.setParameters(singletonList(parameter("number", "forty-one", XSLTParameterType.NUMBER)));
+
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration)
+        );
+    }
+
     @Test
     @DisplayName("Should throw exception when stylesheet contains access to filesystem")
     void shouldThrowExceptionForStylesheetThatAccessesFilesystem() throws Exception {
@@ -144,6 +324,7 @@ class XSLTTransformationPolicyTest {
         String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
 
         xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
 
         Assertions.assertThrows(
             TransformationException.class,
@@ -158,6 +339,7 @@ class XSLTTransformationPolicyTest {
         String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
 
         xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
 
         Assertions.assertThrows(
             TransformationException.class,
@@ -165,6 +347,346 @@ class XSLTTransformationPolicyTest {
         );
     }
 
+    @Test
+    @DisplayName("Should apply the stylesheet of the route matching the root element")
+    void shouldRouteOnRootElement() throws Exception {
+        xsltTransformationPolicyConfiguration.setRoutes(
+            List.of(
+                route("{urn:other}catalog", null, null, loadResource("/io/gravitee/policy/xslt/stylesheet05.xsl")),
+                route("catalog", null, null, loadResource("/io/gravitee/policy/xslt/stylesheet01.xsl")),
+                route("{}test", null, null, loadResource("/io/gravitee/policy/xslt/stylesheet05.xsl"))
+            )
+        );
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+        Function<Buffer, Buffer> transformation = xsltTransformationPolicy.toXSLT(executionContext);
+
+        Buffer catalog = transformation.apply(Buffer.buffer(loadResource("/io/gravitee/policy/xslt/file01.xml")));
+        Buffer test = transformation.apply(Buffer.buffer(loadResource("/io/gravitee/policy/xslt/file03.xml")));
+
+        Diff diff = DiffBuilder
+            .compare(loadResource("/io/gravitee/policy/xslt/output01.xml"))
+            .ignoreWhitespace()
+            .withTest(catalog.toString())
+            .checkForIdentical()
+            .build();
+        assertThat(diff.hasDifferences()).withFailMessage("XML identical %s", diff.toString()).isFalse();
+        assertThat(test.getBytes()).isEqualTo("<test>d\u00e9j\u00e0</test>".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    @DisplayName("Should apply the stylesheet of the route matching the content type and the condition")
+    void shouldRouteOnContentTypeAndCondition() throws Exception {
+        Response response = mock(Response.class);
+        HttpHeaders headers = HttpHeaders.create();
+        headers.set(HttpHeaderNames.CONTENT_TYPE, "Application/XML; charset=UTF-8");
+        when(response.headers()).thenReturn(headers);
+        when(executionContext.response()).thenReturn(response);
+        when(templateEngine.getValue("{#false}", Boolean.class)).thenReturn(false);
+        when(templateEngine.getValue("{#true}", Boolean.class)).thenReturn(true);
+
+        xsltTransformationPolicyConfiguration.setRoutes(
+            List.of(
+                route(null, "text/*", null, loadResource("/io/gravitee/policy/xslt/stylesheet01.xsl")),
+                route(null, "application/xml", "{#false}", loadResource("/io/gravitee/policy/xslt/stylesheet01.xsl")),
+                route(null, "application/xml", "{#true}", loadResource("/io/gravitee/policy/xslt/stylesheet05.xsl"))
+            )
+        );
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+
+        String xml = loadResource("/io/gravitee/policy/xslt/file03.xml");
+        Buffer ret = xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+
+        assertThat(ret.getBytes()).isEqualTo("<test>d\u00e9j\u00e0</test>".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    @DisplayName("Should leave the message unchanged when no route matches and there is no default stylesheet")
+    void shouldNotTransformWhenNoRouteMatches() throws Exception {
+        String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
+
+        xsltTransformationPolicyConfiguration.setRoutes(
+            List.of(route("{urn:other}*", null, null, loadResource("/io/gravitee/policy/xslt/stylesheet05.xsl")))
+        );
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+
+        Buffer ret = xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+
+        assertThat(ret.toString()).isEqualTo(xml);
+        verify(executionContext, never()).setAttribute(eq(TransformationTrace.ATTR_STYLESHEET), any());
+    }
+
+    @Test
+    @DisplayName("Should apply the pipeline to the result of the stylesheet, passing parameters to each stylesheet")
+    void shouldApplyPipeline() throws Exception {
+        String xml = loadResource("/io/gravitee/policy/xslt/file03.xml");
+
+        xsltTransformationPolicyConfiguration.setStylesheet(loadResource("/io/gravitee/policy/xslt/stylesheet03.xsl"));
+        xsltTransformationPolicyConfiguration.setPipeline(
+            List.of(
+                "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+                "<xsl:output omit-xml-declaration=\"yes\"/>" +
+                "<xsl:param name=\"p\"/>" +
+                "<xsl:template match=\"/\"><wrapped p=\"{$p}\"><xsl:copy-of select=\"test\"/></wrapped></xsl:template>" +
+                "</xsl:stylesheet>"
+            )
+        );
+        xsltTransformationPolicyConfiguration.setParameters(List.of(parameter("p", "1", XSLTParameterType.NUMBER)));
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+
+        Buffer ret = xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml));
+
+        assertThat(ret.toString()).isEqualTo("<wrapped p=\"1\"><test>1</test></wrapped>");
+    }
+
+    @Test
+    @DisplayName("Should not indent output unless asked to, with both engines")
+    void shouldWriteCompactOutputByDefault() throws Exception {
+        String xml = loadResource("/io/gravitee/policy/xslt/file03.xml");
+        String indenting =
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:output indent=\"yes\"/>" +
+            "<xsl:template match=\"/\"><a><b/></a></xsl:template>" +
+            "</xsl:stylesheet>";
+        String html =
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:output method=\"html\"/>" +
+            "<xsl:template match=\"/\"><html><body><p>text</p></body></html></xsl:template>" +
+            "</xsl:stylesheet>";
+
+        for (String engine : List.of("s9api", "jaxp")) {
+            setGatewayProperty("policy.xslt.engine", engine);
+
+            assertThat(transform(html, null, xml)).as(engine).isEqualTo("<!DOCTYPE HTML><html><body><p>text</p></body></html>");
+            assertThat(transform(indenting, null, xml)).as(engine).contains("\n   <b/>");
+
+            XSLTOutput output = new XSLTOutput();
+            output.setIndent(false);
+            output.setOmitXmlDeclaration(true);
+            assertThat(transform(indenting, output, xml)).as(engine).isEqualTo("<a><b/></a>");
+
+            output = new XSLTOutput();
+            output.setMethod("xml");
+            output.setEncoding("ISO-8859-1");
+            output.setIndent(true);
+            assertThat(transform(html, output, xml))
+                .as(engine)
+                .startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>")
+                .contains("\n   <body>");
+        }
+    }
+
+    @Test
+    @DisplayName("Should transform JSON to XML and to JSON, with both engines")
+    void shouldTransformJson() throws Exception {
+        String json = "{\"items\": [{\"name\": \"a\", \"price\": 1}, {\"name\": \"b\", \"price\": 2.5}]}";
+        String toXml =
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" " +
+            "xmlns:fn=\"http://www.w3.org/2005/xpath-functions\" exclude-result-prefixes=\"fn\">" +
+            "<xsl:output omit-xml-declaration=\"yes\"/>" +
+            "<xsl:template match=\"/\"><names><xsl:apply-templates select=\"//fn:string[@key = 'name']\"/></names></xsl:template>" +
+            "<xsl:template match=\"fn:string\"><name><xsl:value-of select=\".\"/></name></xsl:template>" +
+            "</xsl:stylesheet>";
+        String toJson =
+            "<xsl:stylesheet version=\"3.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" " +
+            "xmlns:fn=\"http://www.w3.org/2005/xpath-functions\">" +
+            "<xsl:template match=\"/\"><xsl:sequence select=\"map { 'total': sum(//fn:number[@key = 'price']) }\"/></xsl:template>" +
+            "</xsl:stylesheet>";
+        XSLTOutput jsonOutput = new XSLTOutput();
+        jsonOutput.setMethod("json");
+        xsltTransformationPolicyConfiguration.setInputFormat(InputFormat.JSON);
+
+        for (String engine : List.of("s9api", "jaxp")) {
+            setGatewayProperty("policy.xslt.engine", engine);
+
+            assertThat(transform(toXml, null, json)).as(engine).isEqualTo("<names><name>a</name><name>b</name></names>");
+            assertThat(transform(toJson, jsonOutput, "\uFEFF" + json)).as(engine).isEqualTo("{\"total\":3.5}");
+        }
+    }
+
+    @Test
+    @DisplayName("Should decode JSON with the charset of the message")
+    void shouldDecodeJsonWithMessageCharset() throws Exception {
+        String stylesheet =
+            "<xsl:stylesheet version=\"3.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" " +
+            "xmlns:fn=\"http://www.w3.org/2005/xpath-functions\" exclude-result-prefixes=\"fn\">" +
+            "<xsl:output omit-xml-declaration=\"yes\"/>" +
+            "<xsl:template match=\"/\"><name><xsl:value-of select=\"//fn:string\"/></name></xsl:template>" +
+            "</xsl:stylesheet>";
+        xsltTransformationPolicyConfiguration.setInputFormat(InputFormat.JSON);
+        xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+        byte[] json = "{\"name\": \"d\u00e9j\u00e0\"}".getBytes(StandardCharsets.ISO_8859_1);
+
+        messageHeaders.set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=ISO-8859-1");
+        assertThat(xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(json)).toString())
+            .isEqualTo("<name>d\u00e9j\u00e0</name>");
+
+        // UTF-8 unless declared otherwise
+        messageHeaders.set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+        byte[] utf8 = "{\"name\": \"d\u00e9j\u00e0\"}".getBytes(StandardCharsets.UTF_8);
+        assertThat(xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(utf8)).toString())
+            .isEqualTo("<name>d\u00e9j\u00e0</name>");
+    }
+
+    @Test
+    @DisplayName("Should set a JSON content type when the result is serialized as JSON")
+    void shouldSetJsonContentType() throws Exception {
+        Response response = mock(Response.class);
+        HttpHeaders headers = HttpHeaders.create();
+        headers.set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        when(response.headers()).thenReturn(headers);
+
+        XSLTOutput output = new XSLTOutput();
+        output.setMethod("json");
+        xsltTransformationPolicyConfiguration.setInputFormat(InputFormat.JSON);
+        xsltTransformationPolicyConfiguration.setOutput(output);
+        xsltTransformationPolicyConfiguration.setStylesheet(
+            "<xsl:stylesheet version=\"3.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:template match=\"/\"><xsl:sequence select=\"array { 1, 2 }\"/></xsl:template>" +
+            "</xsl:stylesheet>"
+        );
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+
+        ReadWriteStream<Buffer> stream = xsltTransformationPolicy.onResponseContent(response, mock(PolicyChain.class), executionContext);
+        StringBuilder body = new StringBuilder();
+        stream.bodyHandler(chunk -> body.append(chunk));
+        stream.write(Buffer.buffer("{}"));
+        stream.end();
+
+        assertThat(body).hasToString("[1,2]");
+        assertThat(headers.get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    @DisplayName("Should write the cached result of a body already transformed with the same parameters")
+    void shouldReuseCachedResult() {
+        xsltTransformationPolicyConfiguration.setCacheResults(true);
+        xsltTransformationPolicyConfiguration.setStylesheet(
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:output omit-xml-declaration=\"yes\"/>" +
+            "<xsl:param name=\"p\"/>" +
+            "<xsl:template match=\"/\"><cached p=\"{$p}\"><xsl:value-of select=\"/*\"/></cached></xsl:template>" +
+            "</xsl:stylesheet>"
+        );
+        xsltTransformationPolicyConfiguration.setParameters(List.of(parameter("p", "1", XSLTParameterType.NUMBER)));
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+        Function<Buffer, Buffer> transformation = xsltTransformationPolicy.toXSLT(executionContext);
+
+        assertThat(transformation.apply(Buffer.buffer("<a>1</a>")).toString()).isEqualTo("<cached p=\"1\">1</cached>");
+        assertThat(transformation.apply(Buffer.buffer("<a>1</a>")).toString()).isEqualTo("<cached p=\"1\">1</cached>");
+        assertThat(transformation.apply(Buffer.buffer("<a>2</a>")).toString()).isEqualTo("<cached p=\"1\">2</cached>");
+
+        verify(executionContext, times(1)).setAttribute(TransformationTrace.ATTR_RESULT_CACHE, "hit");
+        verify(executionContext, times(2)).setAttribute(TransformationTrace.ATTR_RESULT_CACHE, "miss");
+        verify(executionContext, times(3)).setAttribute(TransformationTrace.ATTR_INPUT_BYTES, 8L);
+    }
+
+    @Test
+    @DisplayName("Should fail with a client error when the source document crosses a limit")
+    void shouldRejectDocumentCrossingLimits() {
+        xsltTransformationPolicyConfiguration.setStylesheet(
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:template match=\"/\"><xsl:copy-of select=\".\"/></xsl:template>" +
+            "</xsl:stylesheet>"
+        );
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+        setGatewayProperty("policy.xslt.limits.max-bytes", "64");
+        setGatewayProperty("policy.xslt.limits.max-depth", "3");
+
+        for (String engine : List.of("s9api", "jaxp")) {
+            setGatewayProperty("policy.xslt.engine", engine);
+
+            assertThat(transformOnResponse("<a><b><c/></b></a>")).isNull();
+            assertThat(transformOnResponse("<a><b><c><d/></c></b></a>").statusCode()).isEqualTo(HttpStatusCode.BAD_REQUEST_400);
+            assertThat(transformOnResponse("<a>" + "<b/>".repeat(20) + "</a>").statusCode())
+                .isEqualTo(HttpStatusCode.REQUEST_ENTITY_TOO_LARGE_413);
+        }
+    }
+
+    @Test
+    @DisplayName("Should abort a transformation going over its evaluation step budget")
+    void shouldAbortTransformationOverStepBudget() {
+        xsltTransformationPolicyConfiguration.setMaxSteps(1000);
+        xsltTransformationPolicyConfiguration.setStylesheet(
+            "<xsl:stylesheet version=\"3.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:template match=\"/\">" +
+            "<xsl:for-each select=\"1 to 100000000 + count(/*)\"><xsl:if test=\". lt 0\">never</xsl:if></xsl:for-each>" +
+            "</xsl:template>" +
+            "</xsl:stylesheet>"
+        );
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+
+        PolicyResult result = transformOnResponse("<a/>");
+
+        assertThat(result.statusCode()).isEqualTo(HttpStatusCode.INTERNAL_SERVER_ERROR_500);
+        assertThat(result.message()).contains("evaluation step budget");
+        verify(executionContext).setAttribute(TransformationTrace.ATTR_ABORTED, "steps");
+
+        ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+        verify(executionContext).setAttribute(eq(TransformationTrace.ATTR_STYLESHEET), fingerprint.capture());
+        StylesheetMetrics metrics = TransformationMetrics.getInstance().getStylesheetMetrics(fingerprint.getValue());
+        assertThat(metrics.getStepBudgetAborts().count()).isEqualTo(1);
+        assertThat(metrics.getTimeouts().count()).isZero();
+    }
+
+    /**
+     * @return the result the chain failed with, or <code>null</code> if the transformation succeeded.
+     */
+    private PolicyResult transformOnResponse(String xml) {
+        Response response = mock(Response.class);
+        when(response.headers()).thenReturn(HttpHeaders.create());
+        PolicyChain chain = mock(PolicyChain.class);
+
+        ReadWriteStream<Buffer> stream = xsltTransformationPolicy.onResponseContent(response, chain, executionContext);
+        stream.bodyHandler(chunk -> {});
+        stream.write(Buffer.buffer(xml));
+        stream.end();
+
+        ArgumentCaptor<PolicyResult> result = ArgumentCaptor.forClass(PolicyResult.class);
+        verify(chain, atMost(1)).streamFailWith(result.capture());
+        return result.getAllValues().isEmpty() ? null : result.getValue();
+    }
+
+    /**
+     * The gateway settings are read once per environment, so a new one is needed to change them.
+     */
+    private void setGatewayProperty(String name, String value) {
+        gatewayProperties.put(name, value);
+        environment = new MockEnvironment();
+        gatewayProperties.forEach(environment::setProperty);
+        lenient().when(executionContext.getComponent(Environment.class)).thenReturn(environment);
+        Request request = mock(Request.class);
+        lenient().when(request.headers()).thenReturn(messageHeaders);
+        lenient().when(executionContext.request()).thenReturn(request);
+        Response response = mock(Response.class);
+        lenient().when(response.headers()).thenReturn(messageHeaders);
+        lenient().when(executionContext.response()).thenReturn(response);
+    }
+
+    private String transform(String stylesheet, XSLTOutput output, String xml) {
+        xsltTransformationPolicyConfiguration.setStylesheet(stylesheet);
+        xsltTransformationPolicyConfiguration.setOutput(output);
+        xsltTransformationPolicy = new XSLTTransformationPolicy(xsltTransformationPolicyConfiguration);
+        return xsltTransformationPolicy.toXSLT(executionContext).apply(Buffer.buffer(xml)).toString();
+    }
+
+    private static XSLTRoute route(String rootElement, String contentType, String condition, String stylesheet) {
+        XSLTRoute route = new XSLTRoute();
+        route.setRootElement(rootElement);
+        route.setContentType(contentType);
+        route.setCondition(condition);
+        route.setStylesheet(stylesheet);
+        return route;
+    }
+
+    private static XSLTParameter parameter(String name, String value, XSLTParameterType type) {
+        XSLTParameter parameter = new XSLTParameter();
+        parameter.setName(name);
+        parameter.setValue(value);
+        parameter.setType(type);
+        return parameter;
+    }
+
     private String loadResource(String resource) throws IOException {
         InputStream is = this.getClass().getResourceAsStream(resource);
         StringWriter sw = new StringWriter();
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.policy.xslt.configuration.InputFormat;
+import io.gravitee.policy.xslt.transformer.CompilationOptions;
+import io.gravitee.policy.xslt.transformer.OutputOptions;
+import io.gravitee.policy.xslt.utils.CapturingOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+class ResultCacheTest {
+
+    private static final String STYLESHEET =
+        "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+        "<xsl:template match=\"/\"><xsl:copy-of select=\".\"/></xsl:template>" +
+        "</xsl:stylesheet>";
+
+    @Test
+    @DisplayName("Should identify a result by its stylesheet, body and parameter values")
+    void shouldIdentifyResultByStylesheetBodyAndParameters() {
+        assertThat(key("<a/>", 1)).isEqualTo(key("<a/>", 1)).hasSameHashCodeAs(key("<a/>", 1));
+        assertThat(key("<a/>", 1)).isNotEqualTo(key("<b/>", 1)).isNotEqualTo(key("<a/>", 2));
+        assertThat(key(STYLESHEET, "<a/>", 1)).isEqualTo(key(new String(STYLESHEET), "<a/>", 1));
+        assertThat(key(STYLESHEET, "<a/>", 1)).isNotEqualTo(key(STYLESHEET.replace("version=\"1.0\"", "version=\"2.0\""), "<a/>", 1));
+    }
+
+    @Test
+    @DisplayName("Should evict least recently accessed results when the maximum weight is reached")
+    void shouldEvictLeastRecentlyAccessedResults() throws Exception {
+        int size = 1000;
+        ResultCache cache = new ResultCache(2 * (size + ResultCache.ENTRY_OVERHEAD), Duration.ZERO, false);
+
+        cache.put(key("<a/>", 1), content(size));
+        cache.put(key("<b/>", 1), content(size));
+        assertThat(cache.get(key("<a/>", 1))).isNotNull();
+        cache.put(key("<c/>", 1), content(size));
+
+        assertThat(cache.get(key("<b/>", 1))).isNull();
+        assertThat(cache.get(key("<a/>", 1))).isNotNull();
+        assertThat(cache.get(key("<c/>", 1))).isNotNull();
+        assertThat(cache.getWeight()).isEqualTo(2 * (size + ResultCache.ENTRY_OVERHEAD));
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+        // Larger than the whole cache
+        cache.put(key("<d/>", 1), content(3 * size));
+        assertThat(cache.get(key("<d/>", 1))).isNull();
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should expire results after their time to live")
+    void shouldExpireResults() throws Exception {
+        ResultCache cache = new ResultCache(ResultCache.DEFAULT_MAXIMUM_WEIGHT, Duration.ofMillis(20), false);
+
+        cache.put(key("<a/>", 1), content(10));
+        assertThat(cache.get(key("<a/>", 1))).isNotNull();
+        Thread.sleep(50);
+
+        assertThat(cache.get(key("<a/>", 1))).isNull();
+        assertThat(cache.getWeight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should keep results out of the heap")
+    void shouldKeepResultsOffHeap() throws Exception {
+        ResultCache cache = new ResultCache(ResultCache.DEFAULT_MAXIMUM_WEIGHT, Duration.ZERO, true);
+        CapturingOutputStream capture = cache.capture(new ByteArrayOutputStream());
+        capture.write("<result>".getBytes(StandardCharsets.UTF_8));
+        capture.write("ok</result>".getBytes(StandardCharsets.UTF_8));
+
+        cache.put(key("<a/>", 1), capture.getCaptured());
+        CachedResult result = cache.get(key("<a/>", 1));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        result.writeTo(output);
+        result.writeTo(output);
+        assertThat(result.isOffHeap()).isTrue();
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("<result>ok</result><result>ok</result>");
+    }
+
+    private static List<ByteBuffer> content(int size) {
+        return List.of(ByteBuffer.wrap(new byte[size]));
+    }
+
+    private static ResultKey key(String body, int parameter) {
+        return key(STYLESHEET, body, parameter);
+    }
+
+    private static ResultKey key(String stylesheet, String body, int parameter) {
+        return new ResultKey(
+            List.of(stylesheet),
+            CompilationOptions.builder().build(),
+            OutputOptions.DEFAULT,
+            InputFormat.XML,
+            Map.of(new QName("p"), new BigDecimal(parameter)),
+            digest(body)
+        );
+    }
+
+    private static byte[] digest(String body) {
+        try {
+            return ResultKey.digest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+class TimerTest {
+
+    private long now;
+
+    @Test
+    @DisplayName("Should decay the maximum duration while keeping count and total time")
+    void shouldDecayMaximum() {
+        Timer timer = new Timer(() -> now, Duration.ofSeconds(3));
+
+        timer.record(50, TimeUnit.MILLISECONDS);
+        tick(1);
+        timer.record(10, TimeUnit.MILLISECONDS);
+        assertThat(timer.max(TimeUnit.MILLISECONDS)).isEqualTo(50.0);
+
+        tick(2);
+        assertThat(timer.max(TimeUnit.MILLISECONDS)).isEqualTo(10.0);
+
+        tick(1);
+        assertThat(timer.max(TimeUnit.MILLISECONDS)).isEqualTo(0.0);
+        assertThat(timer.count()).isEqualTo(2);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(60.0);
+
+        tick(60);
+        timer.record(20, TimeUnit.MILLISECONDS);
+        assertThat(timer.max(TimeUnit.MILLISECONDS)).isEqualTo(20.0);
+    }
+
+    private void tick(long seconds) {
+        now += TimeUnit.SECONDS.toNanos(seconds);
+    }
+}
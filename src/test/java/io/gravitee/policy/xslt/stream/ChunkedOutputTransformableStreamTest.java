@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.gravitee.common.http.MediaType;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.gateway.api.stream.exception.TransformationException;
+import io.gravitee.policy.api.PolicyChain;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * @author GraviteeSource Team
+ */
+@ExtendWith(MockitoExtension.class)
+class ChunkedOutputTransformableStreamTest {
+
+    @Mock
+    private PolicyChain policyChain;
+
+    private HttpHeaders headers;
+
+    private final List<String> chunks = new ArrayList<>();
+
+    private final AtomicBoolean ended = new AtomicBoolean();
+
+    @BeforeEach
+    void init() {
+        headers = HttpHeaders.create();
+        headers.set(HttpHeaderNames.CONTENT_LENGTH, "14");
+    }
+
+    @Test
+    @DisplayName("Should read all received chunks and send the result by chunks")
+    void shouldSendResultByChunks() {
+        ChunkedOutputTransformableStream stream = new ChunkedOutputTransformableStream(
+            headers,
+            policyChain,
+            MediaType.APPLICATION_XML,
+            (input, output) -> {
+                try {
+                    input.transferTo(output);
+                } catch (IOException e) {
+                    throw new TransformationException(e.getMessage(), e);
+                }
+            },
+            4
+        );
+        stream.bodyHandler(chunk -> chunks.add(chunk.toString()));
+
+        stream.write(Buffer.buffer("<a>"));
+        stream.write(Buffer.buffer("<b/>"));
+        stream.write(Buffer.buffer("<c/></a>"));
+        stream.end();
+
+        assertThat(chunks).containsExactly("<a><", "b/><", "c/><", "/a>");
+        assertThat(headers.contains(HttpHeaderNames.CONTENT_LENGTH)).isFalse();
+        assertThat(headers.get(HttpHeaderNames.TRANSFER_ENCODING)).isEqualTo("chunked");
+        assertThat(headers.get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo(MediaType.APPLICATION_XML);
+        verify(policyChain, never()).streamFailWith(argThat(result -> true));
+    }
+
+    @Test
+    @DisplayName("Should fail the chain when transformation fails before sending anything")
+    void shouldFailWhenTransformationFails() {
+        ChunkedOutputTransformableStream stream = new ChunkedOutputTransformableStream(
+            headers,
+            policyChain,
+            MediaType.APPLICATION_XML,
+            (input, output) -> {
+                throw new TransformationException("Invalid");
+            }
+        );
+        stream.bodyHandler(chunk -> chunks.add(chunk.toString()));
+        stream.endHandler(result -> ended.set(true));
+
+        stream.write(Buffer.buffer("<a/>"));
+        stream.end();
+
+        assertThat(chunks).isEmpty();
+        assertThat(ended).isFalse();
+        verify(policyChain).streamFailWith(argThat(result -> result.statusCode() == 500 && "Invalid".equals(result.message())));
+    }
+
+    @Test
+    @DisplayName("Should abort the response when transformation fails after the first chunk has been sent")
+    void shouldAbortWhenTransformationFailsAfterFirstChunk() {
+        ChunkedOutputTransformableStream stream = new ChunkedOutputTransformableStream(
+            headers,
+            policyChain,
+            MediaType.APPLICATION_XML,
+            (input, output) -> {
+                try {
+                    output.write("<a><b/>".getBytes());
+                } catch (IOException e) {
+                    throw new TransformationException(e.getMessage(), e);
+                }
+                throw new TransformationException("Invalid");
+            },
+            4
+        );
+        stream.bodyHandler(chunk -> chunks.add(chunk.toString()));
+        stream.endHandler(result -> ended.set(true));
+
+        stream.write(Buffer.buffer("<a/>"));
+        stream.end();
+
+        assertThat(chunks).containsExactly("<a><");
+        assertThat(ended).isFalse();
+        verify(policyChain).streamFailWith(argThat(result -> result.statusCode() == 500 && "Invalid".equals(result.message())));
+    }
+}
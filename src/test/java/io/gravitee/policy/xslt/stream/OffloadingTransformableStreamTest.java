@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import io.gravitee.common.http.MediaType;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.gateway.api.stream.exception.TransformationException;
+import io.gravitee.policy.api.PolicyChain;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * @author GraviteeSource Team
+ */
+@ExtendWith(MockitoExtension.class)
+class OffloadingTransformableStreamTest {
+
+    private static final StreamTransformation COPY = (input, output) -> {
+        try {
+            input.transferTo(output);
+        } catch (IOException e) {
+            throw new TransformationException(e.getMessage(), e);
+        }
+    };
+
+    @Mock
+    private PolicyChain policyChain;
+
+    private HttpHeaders headers;
+
+    @BeforeEach
+    void init() {
+        headers = HttpHeaders.create();
+        headers.set(HttpHeaderNames.TRANSFER_ENCODING, "chunked");
+    }
+
+    @Test
+    @DisplayName("Should transform small bodies on the calling thread")
+    void shouldTransformSmallBodiesInline() {
+        TransformationExecutor executor = TransformationExecutor.create(1, 0, false);
+        OffloadingTransformableStream stream = new OffloadingTransformableStream(
+            headers,
+            policyChain,
+            MediaType.APPLICATION_XML,
+            COPY,
+            executor,
+            1024
+        );
+        StringBuilder body = new StringBuilder();
+        stream.bodyHandler(chunk -> body.append(chunk));
+
+        stream.write(Buffer.buffer("<a>"));
+        stream.write(Buffer.buffer("</a>"));
+        stream.end();
+
+        assertThat(body).hasToString("<a></a>");
+        assertThat(headers.get(HttpHeaderNames.CONTENT_LENGTH)).isEqualTo("7");
+        assertThat(headers.contains(HttpHeaderNames.TRANSFER_ENCODING)).isFalse();
+        assertThat(headers.get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo(MediaType.APPLICATION_XML);
+        assertThat(executor.getSubmittedCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should transform large bodies on the executor")
+    void shouldTransformLargeBodiesOnExecutor() throws Exception {
+        TransformationExecutor executor = TransformationExecutor.create(1, 0, false);
+        CompletableFuture<String> transformingThread = new CompletableFuture<>();
+        OffloadingTransformableStream stream = new OffloadingTransformableStream(
+            headers,
+            policyChain,
+            MediaType.APPLICATION_XML,
+            (input, output) -> {
+                transformingThread.complete(Thread.currentThread().getName());
+                COPY.transform(input, output);
+            },
+            executor,
+            4
+        );
+        StringBuilder body = new StringBuilder();
+        CountDownLatch ended = new CountDownLatch(1);
+        stream.bodyHandler(chunk -> body.append(chunk));
+        stream.endHandler(result -> ended.countDown());
+
+        stream.write(Buffer.buffer("<a>"));
+        stream.write(Buffer.buffer("</a>"));
+        stream.end();
+
+        assertThat(ended.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(body).hasToString("<a></a>");
+        assertThat(transformingThread.get()).isNotEqualTo(Thread.currentThread().getName());
+        assertThat(executor.getSubmittedCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should fail with 503 when the executor is saturated")
+    void shouldFailWhenExecutorIsSaturated() throws Exception {
+        TransformationExecutor executor = TransformationExecutor.create(1, 0, false);
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(executor.execute(() -> await(release))).isTrue();
+
+        try {
+            OffloadingTransformableStream stream = new OffloadingTransformableStream(
+                headers,
+                policyChain,
+                MediaType.APPLICATION_XML,
+                COPY,
+                executor,
+                0
+            );
+            stream.write(Buffer.buffer("<a/>"));
+            stream.end();
+
+            verify(policyChain).streamFailWith(argThat(result -> result.statusCode() == 503));
+            assertThat(executor.getRejectedCount()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail the chain when an offloaded transformation fails")
+    void shouldFailWhenOffloadedTransformationFails() {
+        OffloadingTransformableStream stream = new OffloadingTransformableStream(
+            headers,
+            policyChain,
+            MediaType.APPLICATION_XML,
+            (input, output) -> {
+                throw new TransformationException("Invalid");
+            },
+            TransformationExecutor.create(1, 0, false),
+            0
+        );
+
+        stream.write(Buffer.buffer("<a/>"));
+        stream.end();
+
+        verify(policyChain, timeout(5000))
+            .streamFailWith(argThat(result -> result.statusCode() == 500 && "Invalid".equals(result.message())));
+    }
+
+    @Test
+    @DisplayName("Should fail the chain when an offloaded transformation throws an error")
+    void shouldFailWhenOffloadedTransformationThrowsError() {
+        OffloadingTransformableStream stream = new OffloadingTransformableStream(
+            headers,
+            policyChain,
+            MediaType.APPLICATION_XML,
+            (input, output) -> {
+                throw new StackOverflowError();
+            },
+            TransformationExecutor.create(1, 0, false),
+            0
+        );
+
+        stream.write(Buffer.buffer("<a/>"));
+        stream.end();
+
+        verify(policyChain, timeout(5000))
+            .streamFailWith(argThat(result -> result.statusCode() == 500 && result.message().contains("StackOverflowError")));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.gateway.api.stream.BufferedReadWriteStream;
+import io.gravitee.policy.xslt.utils.XmlSniffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+class XmlSniffingStreamTest {
+
+    private final List<String> chunks = new ArrayList<>();
+
+    private final AtomicInteger transformations = new AtomicInteger();
+
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    @Test
+    @DisplayName("Should transform a body starting with blanks and a tag")
+    void shouldTransformXml() {
+        XmlSniffingStream stream = sniffingStream();
+
+        stream.write(Buffer.buffer("\r\n  "));
+        stream.write(Buffer.buffer("<a/>"));
+        stream.write(Buffer.buffer("<!-- end -->"));
+        stream.end();
+
+        assertThat(chunks).containsExactly("[\r\n  <a/><!-- end -->]", "end");
+        assertThat(transformations).hasValue(1);
+        assertThat(skipped).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("Should leave a body which is not XML untouched")
+    void shouldNotTransformJson() {
+        XmlSniffingStream stream = sniffingStream();
+
+        stream.write(Buffer.buffer("\uFEFF{\"error\":"));
+        stream.write(Buffer.buffer("\"unavailable\"}"));
+        stream.end();
+
+        assertThat(chunks).containsExactly("\uFEFF{\"error\":", "\"unavailable\"}", "end");
+        assertThat(transformations).hasValue(0);
+        assertThat(skipped).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should leave an empty body untouched")
+    void shouldNotTransformEmptyBody() {
+        XmlSniffingStream stream = sniffingStream();
+
+        stream.end();
+
+        assertThat(chunks).containsExactly("end");
+        assertThat(transformations).hasValue(0);
+        assertThat(skipped).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should tell from headers that a message is not XML")
+    void shouldCheckHeaders() {
+        HttpHeaders headers = HttpHeaders.create();
+        assertThat(XmlSniffer.mayBeXml(headers)).isTrue();
+
+        headers.set(HttpHeaderNames.CONTENT_TYPE, "application/soap+xml; charset=utf-8");
+        assertThat(XmlSniffer.mayBeXml(headers)).isTrue();
+
+        headers.set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+        assertThat(XmlSniffer.mayBeXml(headers)).isFalse();
+
+        headers.set(HttpHeaderNames.CONTENT_TYPE, "text/xml");
+        headers.set(HttpHeaderNames.CONTENT_LENGTH, "0");
+        assertThat(XmlSniffer.mayBeXml(headers)).isFalse();
+    }
+
+    private XmlSniffingStream sniffingStream() {
+        XmlSniffingStream stream = new XmlSniffingStream(
+            () -> {
+                transformations.incrementAndGet();
+                return new AggregatingStream();
+            },
+            skipped::incrementAndGet
+        );
+        stream.bodyHandler(chunk -> chunks.add(chunk.toString()));
+        stream.endHandler(v -> chunks.add("end"));
+        return stream;
+    }
+
+    /**
+     * Stands for a transformation: aggregates the body and sends it back between brackets
+     */
+    private static class AggregatingStream extends BufferedReadWriteStream {
+
+        private final StringBuilder body = new StringBuilder();
+
+        @Override
+        public AggregatingStream write(Buffer chunk) {
+            body.append(chunk.toString());
+            return this;
+        }
+
+        @Override
+        public void end() {
+            super.write(Buffer.buffer("[" + body + "]"));
+            super.end();
+        }
+    }
+}
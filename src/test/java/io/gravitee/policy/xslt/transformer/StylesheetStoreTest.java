@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author GraviteeSource Team
+ */
+class StylesheetStoreTest {
+
+    private static final String STYLESHEET =
+        "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+        "    <xsl:template match=\"/\"><result/></xsl:template>\n" +
+        "</xsl:stylesheet>";
+
+    private static final CompilationOptions UNSECURE = CompilationOptions.builder().secureProcessing(false).build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should load stored stylesheets with their options")
+    void shouldLoadStoredStylesheets() {
+        StylesheetStore store = new StylesheetStore(directory);
+        store.save(STYLESHEET, CompilationOptions.DEFAULT);
+        store.save(STYLESHEET, UNSECURE);
+        store.save(STYLESHEET, UNSECURE);
+
+        List<StylesheetStore.StoredStylesheet> stylesheets = new StylesheetStore(directory).load(10);
+
+        assertThat(stylesheets).hasSize(2).allMatch(stylesheet -> STYLESHEET.equals(stylesheet.getXslt()));
+        assertThat(stylesheets.stream().map(StylesheetStore.StoredStylesheet::getOptions))
+            .containsExactlyInAnyOrder(CompilationOptions.DEFAULT, UNSECURE);
+    }
+
+    @Test
+    @DisplayName("Should delete corrupted and outdated entries")
+    void shouldDeleteInvalidEntries() throws Exception {
+        StylesheetStore store = new StylesheetStore(directory);
+        store.save(STYLESHEET, CompilationOptions.DEFAULT);
+        store.save(STYLESHEET, UNSECURE);
+
+        List<Path> files = listFiles();
+        assertThat(files).hasSize(2);
+        replace(files.get(0), "<result/>", "<other/>");
+        replace(files.get(1), "saxon-version=", "saxon-version=0");
+
+        assertThat(store.load(10)).isEmpty();
+        assertThat(listFiles()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should keep at most the maximum number of entries")
+    void shouldKeepMaximumNumberOfEntries() throws Exception {
+        StylesheetStore store = new StylesheetStore(directory);
+        store.save(STYLESHEET, CompilationOptions.DEFAULT);
+        store.save(STYLESHEET, UNSECURE);
+
+        assertThat(store.load(1)).hasSize(1);
+        assertThat(listFiles()).hasSize(1);
+    }
+
+    private List<Path> listFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void replace(Path file, String target, String replacement) throws Exception {
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        Files.writeString(file, content.replace(target, replacement), StandardCharsets.UTF_8);
+    }
+}
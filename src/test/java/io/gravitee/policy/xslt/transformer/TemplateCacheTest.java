@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+class TemplateCacheTest {
+
+    @Test
+    @DisplayName("Should load a value only once when requested concurrently")
+    void shouldLoadOnceWhenRequestedConcurrently() throws Exception {
+        TemplateCache<String, String> cache = new TemplateCache<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(
+                    executor.submit(() -> {
+                        start.await();
+                        return cache.get(
+                            "key",
+                            key -> {
+                                loads.incrementAndGet();
+                                sleep(50);
+                                return "value";
+                            }
+                        );
+                    })
+                );
+            }
+            start.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().getMissCount()).isEqualTo(1);
+        assertThat(cache.stats().getHitCount()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Should evict least recently accessed entry when maximum size is reached")
+    void shouldEvictLeastRecentlyAccessedEntry() {
+        TemplateCache<String, String> cache = new TemplateCache<>(2, Duration.ZERO);
+
+        cache.get("a", key -> "a");
+        cache.get("b", key -> "b");
+        cache.get("a", key -> "a");
+        cache.get("c", key -> "c");
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("a", key -> "a" + loads.incrementAndGet());
+        cache.get("b", key -> "b" + loads.incrementAndGet());
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should expire entry not accessed for a while")
+    void shouldExpireIdleEntry() {
+        TemplateCache<String, String> cache = new TemplateCache<>(10, Duration.ofMillis(20));
+
+        cache.get("a", key -> "first");
+        sleep(50);
+
+        assertThat(cache.get("a", key -> "second")).isEqualTo("second");
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not keep failed loads")
+    void shouldNotKeepFailedLoads() {
+        TemplateCache<String, String> cache = new TemplateCache<>();
+
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                cache.get(
+                    "a",
+                    key -> {
+                        throw new IllegalStateException("invalid");
+                    }
+                )
+        );
+
+        assertThat(cache.get("a", key -> "value")).isEqualTo("value");
+        assertThat(cache.stats().getLoadFailureCount()).isEqualTo(1);
+        assertThat(cache.stats().getLoadSuccessCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not keep loads failed with an error")
+    void shouldNotKeepLoadsFailedWithError() {
+        TemplateCache<String, String> cache = new TemplateCache<>();
+
+        assertThrows(
+            StackOverflowError.class,
+            () ->
+                cache.get(
+                    "a",
+                    key -> {
+                        throw new StackOverflowError();
+                    }
+                )
+        );
+
+        String value = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> cache.get("a", key -> "value"));
+        assertThat(value).isEqualTo("value");
+        assertThat(cache.stats().getLoadFailureCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should notify the values evicted or invalidated")
+    void shouldNotifyRemovedValues() {
+        List<String> removed = new ArrayList<>();
+        TemplateCache<String, String> cache = new TemplateCache<String, String>(1, Duration.ZERO).onRemoval(removed::add);
+
+        cache.get("a", key -> "a");
+        cache.get("b", key -> "b");
+        assertThat(removed).containsExactly("a");
+
+        cache.invalidateAll();
+        assertThat(removed).containsExactly("a", "b");
+        assertThat(cache.size()).isZero();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
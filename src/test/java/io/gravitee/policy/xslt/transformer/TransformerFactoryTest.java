@@ -0,0 +1,302 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.transformer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.gravitee.policy.xslt.metrics.TransformationTrace;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.xml.namespace.QName;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+class TransformerFactoryTest {
+
+    private static final CompilationOptions SECURE = CompilationOptions.builder().secureProcessing(true).build();
+    private static final CompilationOptions UNSECURE = CompilationOptions.builder().secureProcessing(false).build();
+
+    @Test
+    @DisplayName("Should cache templates per compilation options")
+    void shouldCacheTemplatesPerCompilationOptions() throws Exception {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet01.xsl");
+
+        CompiledStylesheet secure = TransformerFactory.getInstance().getTemplate(stylesheet, SECURE);
+        CompiledStylesheet unsecure = TransformerFactory.getInstance().getTemplate(stylesheet, UNSECURE);
+
+        assertThat(secure).isNotSameAs(unsecure);
+        assertThat(TransformerFactory.getInstance().getTemplate(stylesheet, SECURE)).isSameAs(secure);
+        assertThat(TransformerFactory.getInstance().getTemplate(stylesheet, UNSECURE)).isSameAs(unsecure);
+    }
+
+    @Test
+    @DisplayName("Should not reuse a template compiled without secure processing")
+    void shouldNotReuseUnsecureTemplate() throws Exception {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet_filesystem_access2.xsl");
+
+        assertThat(TransformerFactory.getInstance().getTemplate(stylesheet, UNSECURE)).isNotNull();
+        assertThrows(RuntimeException.class, () -> TransformerFactory.getInstance().getTemplate(stylesheet, SECURE));
+    }
+
+    @Test
+    @DisplayName("Should produce the same output with both engines")
+    void shouldProduceSameOutputWithBothEngines() throws Exception {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet01.xsl");
+        String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
+
+        String s9api = transform(stylesheet, xml, CompilationOptions.builder().engine(EngineType.S9API).build());
+        String jaxp = transform(stylesheet, xml, CompilationOptions.builder().engine(EngineType.JAXP).build());
+
+        assertThat(s9api).isNotBlank().isEqualTo(jaxp);
+    }
+
+    @Test
+    @DisplayName("Should apply each stylesheet of a pipeline to the result of the previous one with both engines")
+    void shouldChainStylesheetsWithBothEngines() throws Exception {
+        for (EngineType engine : EngineType.values()) {
+            CompilationOptions options = CompilationOptions.builder().engine(engine).build();
+            StylesheetTransformer count = TransformerFactory
+                .getInstance()
+                .getTemplate(stylesheet("<count><xsl:value-of select=\"count(//cd)\"/></count>"), options)
+                .newTransformer();
+            StylesheetTransformer multiply = TransformerFactory
+                .getInstance()
+                .getTemplate(stylesheet("<total><xsl:value-of select=\"/count * $factor\"/></total>"), options)
+                .newTransformer();
+            StylesheetTransformer wrap = TransformerFactory
+                .getInstance()
+                .getTemplate(stylesheet("<result><xsl:copy-of select=\"/total\"/></result>"), options)
+                .newTransformer();
+            multiply.setParameter(new QName("factor"), new BigDecimal(10));
+            wrap.setOutputOptions(OutputOptions.builder().omitXmlDeclaration(false).build());
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            count.transform(
+                new StreamSource(new StringReader(loadResource("/io/gravitee/policy/xslt/file01.xml"))),
+                List.of(multiply, wrap),
+                output
+            );
+
+            assertThat(output.toString(StandardCharsets.UTF_8))
+                .as(engine.name())
+                .isEqualTo("<?xml version=\"1.0\" encoding=\"UTF-8\"?><result><total>260</total></result>");
+        }
+    }
+
+    @Test
+    @DisplayName("Should share the Saxon configuration and produce the same output with each tree model")
+    void shouldProduceSameOutputWithEachTreeModel() throws Exception {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet01.xsl");
+        String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
+        CompilationOptions s9apiOptions = CompilationOptions.builder().engine(EngineType.S9API).build();
+        CompilationOptions jaxpOptions = CompilationOptions.builder().engine(EngineType.JAXP).build();
+
+        assertThat(TransformerFactory.getInstance().getTemplate(stylesheet, s9apiOptions).getConfiguration())
+            .isSameAs(TransformerFactory.getInstance().getTemplate(stylesheet, jaxpOptions).getConfiguration())
+            .isSameAs(TransformerFactory.getInstance().getConfiguration());
+
+        String expected = transform(stylesheet, xml, s9apiOptions);
+        try {
+            for (TreeModelType treeModel : TreeModelType.values()) {
+                TransformerFactory.getInstance().configureTreeModel(treeModel);
+
+                assertThat(TransformerFactory.getInstance().getConfiguration().getTreeModel())
+                    .isEqualTo(treeModel.getTreeModel().getSymbolicValue());
+                assertThat(transform(stylesheet, xml, s9apiOptions)).as(treeModel.name()).isEqualTo(expected);
+                assertThat(transform(stylesheet, xml, jaxpOptions)).as(treeModel.name()).isEqualTo(expected);
+            }
+        } finally {
+            TransformerFactory.getInstance().configureTreeModel(TreeModelType.TINY);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reuse a released JAXP transformer without its parameters and output options")
+    void shouldReuseReleasedJaxpTransformer() throws Exception {
+        CompiledStylesheet stylesheet = TransformerFactory
+            .getInstance()
+            .getTemplate(
+                stylesheet("<total><xsl:value-of select=\"count(//cd) * $factor\"/></total>"),
+                CompilationOptions.builder().engine(EngineType.JAXP).build()
+            );
+        String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
+
+        StylesheetTransformer transformer = stylesheet.newTransformer();
+        transformer.setParameter(new QName("factor"), new BigDecimal(10));
+        transformer.setOutputOptions(OutputOptions.builder().omitXmlDeclaration(false).build());
+        assertThat(transform(transformer, xml)).isEqualTo("<?xml version=\"1.0\" encoding=\"UTF-8\"?><total>260</total>");
+        transformer.release();
+
+        StylesheetTransformer reused = stylesheet.newTransformer();
+        assertThat(reused).isSameAs(transformer);
+        assertThat(transform(reused, xml)).isEqualTo("<total>26</total>");
+        reused.release();
+
+        stylesheet.dispose();
+        assertThat(stylesheet.newTransformer()).isNotSameAs(transformer);
+    }
+
+    @Test
+    @DisplayName("Should only reuse the released s9api transformers of a stylesheet without global variables or parameters")
+    void shouldReuseReleasedS9apiTransformerWithoutGlobals() throws Exception {
+        CompilationOptions options = CompilationOptions.builder().engine(EngineType.S9API).build();
+        CompiledStylesheet stylesheet = TransformerFactory
+            .getInstance()
+            .getTemplate(
+                "<xsl:stylesheet version=\"3.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+                "<xsl:output omit-xml-declaration=\"yes\"/>" +
+                "<xsl:template match=\"/\"><total><xsl:value-of select=\"count(//cd)\"/></total></xsl:template>" +
+                "</xsl:stylesheet>",
+                options
+            );
+        String xml = loadResource("/io/gravitee/policy/xslt/file01.xml");
+
+        StylesheetTransformer transformer = stylesheet.newTransformer();
+        transformer.setOutputOptions(OutputOptions.builder().omitXmlDeclaration(false).build());
+        assertThat(transform(transformer, xml)).isEqualTo("<?xml version=\"1.0\" encoding=\"UTF-8\"?><total>26</total>");
+        transformer.release();
+
+        StylesheetTransformer reused = stylesheet.newTransformer();
+        assertThat(reused).isSameAs(transformer);
+        assertThat(transform(reused, "<catalog><cd/></catalog>")).isEqualTo("<total>1</total>");
+        reused.release();
+
+        stylesheet.dispose();
+        assertThat(stylesheet.newTransformer()).isNotSameAs(transformer);
+
+        // The global parameter is evaluated once for all by a Saxon transformer
+        CompiledStylesheet parameterized = TransformerFactory
+            .getInstance()
+            .getTemplate(stylesheet("<total><xsl:value-of select=\"count(//cd) * $factor\"/></total>"), options);
+        StylesheetTransformer first = parameterized.newTransformer();
+        first.setParameter(new QName("factor"), new BigDecimal(10));
+        assertThat(transform(first, xml)).isEqualTo("<total>260</total>");
+        first.release();
+
+        StylesheetTransformer second = parameterized.newTransformer();
+        assertThat(second).isNotSameAs(first);
+        assertThat(transform(second, xml)).isEqualTo("<total>26</total>");
+    }
+
+    @Test
+    @DisplayName("Should abort a transformation going over its budget with both engines")
+    void shouldAbortTransformationOverBudget() throws Exception {
+        String stylesheet = stylesheet("<total><xsl:value-of select=\"count((1 to 100000)[. lt 0])\"/></total>");
+        // Not a constant range, which would be computed when compiling
+        String runaway =
+            "<xsl:stylesheet version=\"3.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:template match=\"/\">" +
+            "<xsl:for-each select=\"1 to 100000000 + count(/*)\"><xsl:if test=\". lt 0\">never</xsl:if></xsl:for-each>" +
+            "</xsl:template>" +
+            "</xsl:stylesheet>";
+
+        for (EngineType engine : EngineType.values()) {
+            CompilationOptions options = CompilationOptions.builder().engine(engine).tracing(true).build();
+
+            // Only the instructions count, not the items of an expression
+            StylesheetTransformer transformer = TransformerFactory.getInstance().getTemplate(stylesheet, options).newTransformer();
+            transformer.setTraceListener(new TransformationBudget(Duration.ZERO, 100));
+            assertThat(transform(transformer, "<a/>")).as(engine.name()).isEqualTo("<total>0</total>");
+            transformer.release();
+
+            assertThat(abortReason(runaway, options, new TransformationBudget(Duration.ZERO, 1000)))
+                .as(engine.name())
+                .isEqualTo(TransformationAbortedException.Reason.STEPS);
+            assertThat(abortReason(runaway, options, new TransformationBudget(Duration.ofMillis(50), 0)))
+                .as(engine.name())
+                .isEqualTo(TransformationAbortedException.Reason.TIMEOUT);
+        }
+    }
+
+    @Test
+    @DisplayName("Should precompile stylesheet in the background")
+    void shouldPrecompileInBackground() throws Exception {
+        String stylesheet = loadResource("/io/gravitee/policy/xslt/stylesheet03.xsl");
+
+        CompletableFuture<Void> precompilation = TransformerFactory.getInstance().precompile(stylesheet, SECURE);
+
+        assertThat(TransformerFactory.getInstance().precompile(stylesheet, SECURE)).isSameAs(precompilation);
+        precompilation.get(5, TimeUnit.SECONDS);
+        TransformationTrace trace = new TransformationTrace();
+        TransformerFactory.getInstance().getTemplate(stylesheet, SECURE, trace);
+        assertThat(trace.isCacheHit()).isTrue();
+    }
+
+    private static String stylesheet(String template) {
+        return (
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:output omit-xml-declaration=\"yes\"/>" +
+            "<xsl:param name=\"factor\" select=\"1\"/>" +
+            "<xsl:template match=\"/\">" +
+            template +
+            "</xsl:template>" +
+            "</xsl:stylesheet>"
+        );
+    }
+
+    private String transform(String stylesheet, String xml, CompilationOptions options) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TransformerFactory
+            .getInstance()
+            .getTemplate(stylesheet, options)
+            .newTransformer()
+            .transform(new StreamSource(new StringReader(xml)), output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static TransformationAbortedException.Reason abortReason(
+        String stylesheet,
+        CompilationOptions options,
+        TransformationBudget budget
+    ) throws Exception {
+        StylesheetTransformer transformer = TransformerFactory.getInstance().getTemplate(stylesheet, options).newTransformer();
+        transformer.setTraceListener(budget);
+        TransformationAbortedException aborted = TransformationAbortedException.find(
+            assertThrows(TransformerException.class, () -> transform(transformer, "<a/>"))
+        );
+        assertThat(aborted).isNotNull();
+        return aborted.getReason();
+    }
+
+    private static String transform(StylesheetTransformer transformer, String xml) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(new StreamSource(new StringReader(xml)), output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private String loadResource(String resource) throws IOException {
+        InputStream is = this.getClass().getResourceAsStream(resource);
+        StringWriter sw = new StringWriter();
+        IOUtils.copy(is, sw, "UTF-8");
+        return sw.toString();
+    }
+}
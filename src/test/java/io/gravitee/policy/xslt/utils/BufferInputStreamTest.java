@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+class BufferInputStreamTest {
+
+    @Test
+    @DisplayName("Should read buffer without consuming it")
+    void shouldReadBufferWithoutConsumingIt() throws IOException {
+        Buffer buffer = Buffer.buffer("<catalog/>");
+
+        assertThat(read(new BufferInputStream(buffer))).isEqualTo("<catalog/>");
+        assertThat(read(new BufferInputStream(buffer))).isEqualTo("<catalog/>");
+        assertThat(buffer.length()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Should read chunks as a single stream")
+    void shouldReadChunksAsSingleStream() throws IOException {
+        List<Buffer> chunks = List.of(Buffer.buffer("<cata"), Buffer.buffer("log>"), Buffer.buffer(""), Buffer.buffer("</catalog>"));
+
+        assertThat(read(new BufferInputStream(chunks))).isEqualTo("<catalog></catalog>");
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+class CapturingOutputStreamTest {
+
+    @Test
+    @DisplayName("Should capture the written bytes in growing buffers")
+    void shouldCaptureWrittenBytes() throws IOException {
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            CapturingOutputStream capture = new CapturingOutputStream(output, 10_000, direct);
+            byte[] chunk = new byte[100];
+            for (int i = 0; i < 30; i++) {
+                chunk[i] = (byte) i;
+                capture.write(chunk);
+                capture.write(i);
+            }
+
+            List<ByteBuffer> captured = capture.getCaptured();
+            assertThat(capture.isComplete()).isTrue();
+            assertThat(capture.getCount()).isEqualTo(3030);
+            assertThat(captured).hasSizeGreaterThan(1).allMatch(buffer -> buffer.isDirect() == direct);
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            for (ByteBuffer buffer : captured) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                copy.write(bytes);
+            }
+            assertThat(copy.toByteArray()).isEqualTo(output.toByteArray());
+        }
+    }
+
+    @Test
+    @DisplayName("Should stop capturing once the limit is exceeded")
+    void shouldStopCapturingOverLimit() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CapturingOutputStream capture = new CapturingOutputStream(output, 150, false);
+
+        capture.write(new byte[100]);
+        assertThat(capture.isComplete()).isTrue();
+        capture.write(new byte[100]);
+
+        assertThat(capture.isComplete()).isFalse();
+        assertThat(output.size()).isEqualTo(200);
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+class FingerprintTest {
+
+    @Test
+    @DisplayName("Should compute MurmurHash3 x64 128-bit of the UTF-8 text")
+    void shouldComputeMurmurHash() {
+        assertThat(Fingerprint.of("")).hasToString("00000000000000000000000000000000");
+        assertThat(Fingerprint.of("The quick brown fox jumps over the lazy dog")).hasToString("e34bbc7bbc071b6c7a433ca9c49a9347");
+    }
+
+    @Test
+    @DisplayName("Should give the same fingerprint to equal texts")
+    void shouldBeDeterministic() {
+        String text = "<xsl:stylesheet version=\"1.0\"/>".repeat(1000);
+
+        assertThat(Fingerprint.of(text)).isEqualTo(Fingerprint.of(new String(text))).hasSameHashCodeAs(Fingerprint.of(text));
+    }
+
+    @Test
+    @DisplayName("Should hash the whole text, including after non ASCII characters")
+    void shouldHashWholeText() {
+        String prefix = "é€😀".repeat(3000);
+
+        assertThat(Fingerprint.of(prefix + "a")).isNotEqualTo(Fingerprint.of(prefix + "b"));
+        assertThat(Fingerprint.of(prefix + "a")).isNotEqualTo(Fingerprint.of(prefix));
+    }
+}
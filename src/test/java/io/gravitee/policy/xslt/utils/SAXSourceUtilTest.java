@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.xslt.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.transform.sax.SAXSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * @author GraviteeSource Team
+ */
+class SAXSourceUtilTest {
+
+    private static final String XML = "<catalog><cd/><cd/></catalog>";
+    private static final String XML_WITH_DOCTYPE =
+        "<?xml version=\"1.0\"?><!DOCTYPE catalog [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]><catalog>&xxe;</catalog>";
+
+    @Test
+    @DisplayName("Should keep rejecting DOCTYPE when a secure reader is reused")
+    void shouldKeepSecureConfigurationWhenReused() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(parse(XML, true)).isEqualTo(3);
+            assertThrows(SAXParseException.class, () -> parse(XML_WITH_DOCTYPE, true));
+        }
+    }
+
+    @Test
+    @DisplayName("Should not share configuration between secure and unsecure readers")
+    void shouldNotShareConfigurationBetweenModes() throws Exception {
+        assertThat(parse(XML, false)).isEqualTo(3);
+        assertThrows(SAXParseException.class, () -> parse(XML_WITH_DOCTYPE, true));
+        assertThat(parse(XML, true)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should abort parsing as soon as the document crosses a structure limit")
+    void shouldAbortParsingWhenLimitIsCrossed() throws Exception {
+        DocumentLimits limits = DocumentLimits.builder().maxDepth(2).maxAttributes(1).maxNodes(6).build();
+
+        assertThat(parse("<a x=\"1\"><b y=\"2\">text</b></a>", limits)).isEqualTo(2);
+        assertThat(limitOf(() -> parse("<a><b><c/></b></a>", limits))).isEqualTo(DocumentLimitException.Limit.DEPTH);
+        assertThat(limitOf(() -> parse("<a x=\"1\" y=\"2\"/>", limits))).isEqualTo(DocumentLimitException.Limit.ATTRIBUTES);
+        assertThat(limitOf(() -> parse("<a><b/>1<b/>2<b/>3</a>", limits))).isEqualTo(DocumentLimitException.Limit.NODES);
+
+        // The parser is given back to the pool even after an aborted parsing
+        assertThat(parse(XML, true)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should fail as soon as more bytes than allowed are read")
+    void shouldLimitSize() throws Exception {
+        SizeLimitingInputStream input = new SizeLimitingInputStream(new BufferInputStream(Buffer.buffer(XML)), 8);
+
+        assertThat(input.read(new byte[8], 0, 8)).isEqualTo(8);
+        assertThat(limitOf(input::read)).isEqualTo(DocumentLimitException.Limit.BYTES);
+    }
+
+    private static DocumentLimitException.Limit limitOf(Executable executable) {
+        DocumentLimitException exception = DocumentLimitException.find(assertThrows(Exception.class, executable));
+        assertThat(exception).isNotNull();
+        return exception.getLimit();
+    }
+
+    private int parse(String xml, boolean secureProcessing) throws Exception {
+        return parse(SAXSourceUtil.createSAXSource(Buffer.buffer(xml), secureProcessing));
+    }
+
+    private int parse(String xml, DocumentLimits limits) throws Exception {
+        return parse(SAXSourceUtil.createSAXSource(new BufferInputStream(Buffer.buffer(xml)), true, limits));
+    }
+
+    private int parse(SAXSource source) throws Exception {
+        AtomicInteger elements = new AtomicInteger();
+        source
+            .getXMLReader()
+            .setContentHandler(
+                new DefaultHandler() {
+                    @Override
+                    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                        elements.incrementAndGet();
+                    }
+                }
+            );
+        source.getXMLReader().parse(source.getInputSource());
+        return elements.get();
+    }
+}
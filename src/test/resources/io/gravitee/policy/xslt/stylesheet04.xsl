@@ -0,0 +1,10 @@
+<xsl:stylesheet version="1.0"
+                xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+
+    <xsl:template match="/">
+
+        <test>{#request.headers['test'][0]}</test>
+
+    </xsl:template>
+
+</xsl:stylesheet>
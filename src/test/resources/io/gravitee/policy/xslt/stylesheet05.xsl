@@ -0,0 +1,10 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<xsl:stylesheet version="1.0"
+                xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+    <xsl:output method="xml" encoding="ISO-8859-1" omit-xml-declaration="yes"/>
+
+    <xsl:template match="/">
+        <test>déjà</test>
+    </xsl:template>
+
+</xsl:stylesheet>
@@ -0,0 +1,20 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<xsl:stylesheet version="2.0"
+                xmlns:xsl="http://www.w3.org/1999/XSL/Transform"
+                xmlns:t="urn:test"
+                exclude-result-prefixes="t">
+    <xsl:param name="number"/>
+    <xsl:param name="flag"/>
+    <xsl:param name="t:document"/>
+    <xsl:param name="text"/>
+
+    <xsl:template match="/">
+        <result>
+            <number><xsl:value-of select="$number + 1"/></number>
+            <flag><xsl:value-of select="not($flag)"/></flag>
+            <xsl:copy-of select="$t:document/items/item[2]"/>
+            <text><xsl:value-of select="$text"/></text>
+        </result>
+    </xsl:template>
+
+</xsl:stylesheet>